@@ -79,10 +79,27 @@ public class Camera {
         viewMatrixDirty = false;
     }
 
+    /**
+     * Stores the normalized direction the camera is looking in into dest.
+     */
+    public Vector3f getDirection(Vector3f dest) {
+        // The view matrix maps the view direction onto -Z
+        return getViewMatrix().positiveZ(dest).negate();
+    }
+
+    /**
+     * Returns the position. Change it through setPosition() or move(), which keep the view matrix
+     * in step.
+     */
     public Vector3f getPosition() {
         return position;
     }
 
+    public void setPosition(float x, float y, float z) {
+        position.set(x, y, z);
+        viewMatrixDirty = true;
+    }
+
     public float getPitch() {
         return pitch;
     }
@@ -18,6 +18,7 @@ public class Input {
     private double lastX;
     private double lastY;
     private boolean firstMouse;
+    private boolean edgeModeToggled;
     
     private GLFWKeyCallback keyCallback;
     private GLFWCursorPosCallback mouseCallback;
@@ -48,6 +49,11 @@ public class Input {
                     player.selectSlot(key - GLFW.GLFW_KEY_1);
                 }
                 
+                // F2 cycles how block edges are drawn
+                if (key == GLFW.GLFW_KEY_F2 && action == GLFW.GLFW_PRESS) {
+                    edgeModeToggled = true;
+                }
+                
                 if (key == GLFW.GLFW_KEY_ESCAPE && action == GLFW.GLFW_PRESS) {
                     GLFW.glfwSetWindowShouldClose(window, true);
                 }
@@ -142,6 +148,15 @@ public class Input {
         }
     }
 
+    /**
+     * Returns true once for every press of the edge mode key since the last call.
+     */
+    public boolean consumeEdgeModeToggle() {
+        boolean toggled = edgeModeToggled;
+        edgeModeToggled = false;
+        return toggled;
+    }
+
     public void cleanup() {
         keyCallback.free();
         mouseCallback.free();
@@ -1,14 +1,20 @@
 package game;
 
+import game.renderer.ChunkDrawBatch;
 import game.renderer.Shader;
+import game.world.Chunk;
+import game.world.ChunkStreamer;
 import game.world.World;
 import game.world.WorldSaveManager;
 import game.hud.HUD;
+import game.entity.EntityManager;
 import game.entity.Player;
 import org.lwjgl.glfw.GLFW;
 import org.lwjgl.opengl.GL;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL13;
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
 
 import java.io.BufferedReader;
 import java.io.InputStream;
@@ -18,18 +24,42 @@ import java.util.stream.Collectors;
 public class Main {
     private static final int WIDTH = 1280;
     private static final int HEIGHT = 720;
+    // Radius in chunks, override with -DrenderDistance=<chunks>
+    private static final int RENDER_DISTANCE = Integer.getInteger("renderDistance", 8);
+    private static final long AUTOSAVE_INTERVAL_NANOS = 5L * 60 * 1_000_000_000L;
+    // Simulation ticks per second independent of the frame rate, override with -DtickRate=<hz>.
+    // Clamped to 1-1000, zero would divide by zero and a negative rate would never tick.
+    private static final int TICK_RATE = Math.max(1, Math.min(1000, Integer.getInteger("tickRate", 60)));
+    private static final long TICK_NANOS = 1_000_000_000L / TICK_RATE;
+    private static final float TICK_SECONDS = 1.0f / TICK_RATE;
+    // Longest frame time simulated, a long stall skips ahead instead of running a burst of ticks
+    private static final long MAX_FRAME_NANOS = 250_000_000L;
+    // Draw all sections with one multi-draw call where OpenGL 4.3 is available, -DmultiDraw=false to disable
+    private static final boolean MULTI_DRAW = Boolean.parseBoolean(System.getProperty("multiDraw", "true"));
+    // Cull sections in a compute shader when multi-drawing, -DgpuCulling=false to cull on the CPU
+    private static final boolean GPU_CULLING = Boolean.parseBoolean(System.getProperty("gpuCulling", "true"));
     private long window;
     private Camera camera;
     private Input input;
     private World world;
     private Shader shader;
     private Player player;
+    private EntityManager entities;
     private HUD hud;
     private WorldSaveManager saveManager;
+    private ChunkStreamer chunkStreamer;
+    private final Vector3f viewDirection = new Vector3f();
+    private final Matrix4f viewRotation = new Matrix4f();
     private long lastFrameTime;
+    // Simulation time not yet covered by a tick
+    private long tickAccumulator;
     private int frames;
+    private int ticks;
     private long lastFPSTime;
     private int fps;
+    private int tps;
+    private long nextAutosaveTime;
+    private EdgeMode edgeMode = EdgeMode.OUTLINE;
 
     public void run() {
         init();
@@ -45,11 +75,19 @@ public class Main {
         GLFW.glfwDefaultWindowHints();
         GLFW.glfwWindowHint(GLFW.GLFW_VISIBLE, GLFW.GLFW_FALSE);
         GLFW.glfwWindowHint(GLFW.GLFW_RESIZABLE, GLFW.GLFW_TRUE);
-        GLFW.glfwWindowHint(GLFW.GLFW_CONTEXT_VERSION_MAJOR, 3);
-        GLFW.glfwWindowHint(GLFW.GLFW_CONTEXT_VERSION_MINOR, 3);
         GLFW.glfwWindowHint(GLFW.GLFW_OPENGL_PROFILE, GLFW.GLFW_OPENGL_CORE_PROFILE);
 
-        window = GLFW.glfwCreateWindow(WIDTH, HEIGHT, "Minecraft Clone", 0, 0);
+        // Some drivers give exactly the version asked for, so ask for 4.3 first for multi-draw
+        if (MULTI_DRAW) {
+            GLFW.glfwWindowHint(GLFW.GLFW_CONTEXT_VERSION_MAJOR, 4);
+            GLFW.glfwWindowHint(GLFW.GLFW_CONTEXT_VERSION_MINOR, 3);
+            window = GLFW.glfwCreateWindow(WIDTH, HEIGHT, "Minecraft Clone", 0, 0);
+        }
+        if (window == 0) {
+            GLFW.glfwWindowHint(GLFW.GLFW_CONTEXT_VERSION_MAJOR, 3);
+            GLFW.glfwWindowHint(GLFW.GLFW_CONTEXT_VERSION_MINOR, 3);
+            window = GLFW.glfwCreateWindow(WIDTH, HEIGHT, "Minecraft Clone", 0, 0);
+        }
         if (window == 0) {
             throw new RuntimeException("Failed to create GLFW window");
         }
@@ -84,6 +122,8 @@ public class Main {
             shader.createUniform("viewMatrix");
             shader.createUniform("useTexture");
             shader.createUniform("color");
+            shader.createUniform("showEdges");
+            shader.createUniform("chunkOffset");
             
             // Initialize HUD
             hud = new HUD(WIDTH, HEIGHT);
@@ -95,7 +135,15 @@ public class Main {
         // Initialize camera and input
         camera = new Camera();
         world = new World();
+        if (MULTI_DRAW && ChunkDrawBatch.isSupported()) {
+            try {
+                world.setDrawBatch(new ChunkDrawBatch(world.getVertexArena(), GPU_CULLING ? createCullShader() : null, Chunk.SIZE));
+            } catch (Exception e) {
+                System.err.println("Multi-draw unavailable, drawing sections one by one: " + e.getMessage());
+            }
+        }
         player = new Player(world, camera);
+        entities = new EntityManager(world);
         input = new Input(window, camera, player);
         
         // Initialize save manager
@@ -106,10 +154,26 @@ public class Main {
             saveManager.loadWorld(world, player);
         } catch (Exception e) {
             System.out.println("No existing save found, starting new world");
+            // Start standing on the generated surface
+            float spawnY = world.getGenerator().getSurfaceHeight(0, 0) + 1;
+            player.setPosition(new Vector3f(0.5f, spawnY, 0.5f));
         }
         
-        lastFrameTime = System.currentTimeMillis();
+        chunkStreamer = new ChunkStreamer(world, saveManager, RENDER_DISTANCE);
+        
+        lastFrameTime = System.nanoTime();
         lastFPSTime = lastFrameTime;
+        nextAutosaveTime = System.nanoTime() + AUTOSAVE_INTERVAL_NANOS;
+    }
+
+    private Shader createCullShader() throws Exception {
+        Shader cullShader = new Shader();
+        cullShader.createComputeShader(loadShaderSource("/shaders/chunk_cull.comp"));
+        cullShader.link();
+        cullShader.createUniform("frustumPlanes");
+        cullShader.createUniform("drawCount");
+        cullShader.createUniform("sectionSize");
+        return cullShader;
     }
 
     private String loadShaderSource(String path) {
@@ -127,21 +191,39 @@ public class Main {
 
     private void loop() {
         while (!GLFW.glfwWindowShouldClose(window)) {
-            long currentTime = System.currentTimeMillis();
-            float deltaTime = (currentTime - lastFrameTime) / 1000.0f;
+            long currentTime = System.nanoTime();
+            tickAccumulator += Math.min(currentTime - lastFrameTime, MAX_FRAME_NANOS);
             lastFrameTime = currentTime;
             
             // Update FPS counter
             frames++;
-            if (currentTime - lastFPSTime > 1000) {
+            if (currentTime - lastFPSTime > 1_000_000_000L) {
                 fps = frames;
                 frames = 0;
+                tps = ticks;
+                ticks = 0;
                 lastFPSTime = currentTime;
+                GLFW.glfwSetWindowTitle(window, String.format(
+                    "Minecraft Clone - %d FPS, %d ticks/s, %d sections drawn, %d culled, edges: %s, %d draw calls (%s), %d vertices",
+                    fps, tps, world.getVisibleSections(), world.getCulledSections(),
+                    edgeMode, world.getDrawCalls(), world.isBatched() ? "multi-draw" : "per section",
+                    world.getDrawnVertices()));
             }
 
-            // Update game state
-            input.update(deltaTime);
-            player.update(deltaTime);
+            // Run as many fixed ticks as the elapsed time covers, then draw in between the last two
+            while (tickAccumulator >= TICK_NANOS) {
+                input.update(TICK_SECONDS);
+                player.update(TICK_SECONDS);
+                entities.update(TICK_SECONDS);
+                tickAccumulator -= TICK_NANOS;
+                ticks++;
+            }
+            player.updateCamera((float) tickAccumulator / TICK_NANOS);
+            if (input.consumeEdgeModeToggle()) {
+                edgeMode = EdgeMode.values()[(edgeMode.ordinal() + 1) % EdgeMode.values().length];
+            }
+            chunkStreamer.update(player.getPosition(), camera.getDirection(viewDirection));
+            world.update(camera.getPosition());
             
             // Clear the screen
             GL11.glClear(GL11.GL_COLOR_BUFFER_BIT | GL11.GL_DEPTH_BUFFER_BIT);
@@ -154,16 +236,22 @@ public class Main {
             
             shader.bind();
             shader.setUniform("projectionMatrix", camera.getProjectionMatrix());
-            shader.setUniform("viewMatrix", camera.getViewMatrix());
+            // Chunks are drawn relative to the camera, so only the rotation goes into the view matrix
+            shader.setUniform("viewMatrix", viewRotation.set(camera.getViewMatrix()).setTranslation(0, 0, 0));
             shader.setUniform("useTexture", false);
             shader.setUniform("color", 0.5f, 0.8f, 0.3f, 1.0f);
-            world.render();
+            shader.setUniform("showEdges", edgeMode == EdgeMode.OUTLINE);
+            // Every pass below draws only the sections in view
+            world.cull(camera.getProjectionMatrix(), camera.getViewMatrix());
+            world.render(shader, camera.getPosition());
             
-            // Draw wireframe
-            GL11.glPolygonMode(GL11.GL_FRONT_AND_BACK, GL11.GL_LINE);
-            shader.setUniform("color", 0.0f, 0.0f, 0.0f, 1.0f);
-            world.render();
-            GL11.glPolygonMode(GL11.GL_FRONT_AND_BACK, GL11.GL_FILL);
+            // Draw wireframe, a second pass over the whole visible world
+            if (edgeMode == EdgeMode.WIREFRAME) {
+                GL11.glPolygonMode(GL11.GL_FRONT_AND_BACK, GL11.GL_LINE);
+                shader.setUniform("color", 0.0f, 0.0f, 0.0f, 1.0f);
+                world.render(shader, camera.getPosition());
+                GL11.glPolygonMode(GL11.GL_FRONT_AND_BACK, GL11.GL_FILL);
+            }
             
             shader.unbind();
             
@@ -175,14 +263,17 @@ public class Main {
             GLFW.glfwSwapBuffers(window);
             GLFW.glfwPollEvents();
             
-            // Auto-save every 5 minutes
-            if (currentTime % (5 * 60 * 1000) < 100) {
+            // Auto-save every 5 minutes, only changed chunks are written and off this thread
+            if (System.nanoTime() >= nextAutosaveTime) {
                 saveManager.saveWorld(world, player);
+                nextAutosaveTime = System.nanoTime() + AUTOSAVE_INTERVAL_NANOS;
             }
         }
         
-        // Save before exit
+        // Save before exit and wait for the writer to finish
+        chunkStreamer.shutdown();
         saveManager.saveWorld(world, player);
+        saveManager.close();
     }
 
     private void cleanup() {
@@ -197,4 +288,12 @@ public class Main {
     public static void main(String[] args) {
         new Main().run();
     }
+
+    // How block edges are drawn, cycled with F2: outlines in the fill shader, the old second
+    // wireframe pass, or not at all
+    private enum EdgeMode {
+        OUTLINE,
+        WIREFRAME,
+        NONE
+    }
 }
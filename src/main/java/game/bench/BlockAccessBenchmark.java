@@ -0,0 +1,119 @@
+package game.bench;
+
+import game.world.Block;
+import game.world.Chunk;
+import game.world.NoiseTerrainGenerator;
+import game.world.TerrainGenerator;
+import game.world.World;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Compares World.getBlock against the previous boxed HashMap lookup with floorDiv and floorMod,
+ * for random lookups across the loaded area and for coherent ones like collision and picking.
+ * Usage: BlockAccessBenchmark [radius] (defaults to 8 chunks around the origin).
+ */
+public class BlockAccessBenchmark {
+    private static final int LOOKUPS = 1 << 22;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+
+    interface BlockSource {
+        byte getBlock(int x, int y, int z);
+    }
+
+    public static void main(String[] args) {
+        int radius = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        TerrainGenerator generator = new NoiseTerrainGenerator(12345L);
+        World world = new World(12345L);
+        Map<Long, Chunk> boxed = new HashMap<>();
+        for (int x = -radius; x < radius; x++) {
+            for (int z = -radius; z < radius; z++) {
+                Chunk chunk = generator.generate(x, z);
+                world.addChunk(chunk);
+                boxed.put(((long) x << 32) | (z & 0xFFFFFFFFL), chunk);
+            }
+        }
+        int extent = radius * Chunk.SIZE;
+        System.out.printf("%d chunks, %d lookups per round%n", boxed.size(), LOOKUPS);
+
+        // The lookup World.getBlock did before the chunk map and the last-chunk cache
+        BlockSource hashMap = (x, y, z) -> {
+            Chunk chunk = boxed.get(((long) Math.floorDiv(x, Chunk.SIZE) << 32)
+                | (Math.floorDiv(z, Chunk.SIZE) & 0xFFFFFFFFL));
+            if (chunk == null) {
+                return Block.AIR;
+            }
+            return chunk.getBlock(Math.floorMod(x, Chunk.SIZE), y, Math.floorMod(z, Chunk.SIZE));
+        };
+        BlockSource cached = world::getBlock;
+
+        int[] random = randomCoordinates(extent);
+        int[] coherent = collisionBoxes(extent);
+        run("random", "hash map", hashMap, random);
+        run("random", "world", cached, random);
+        run("coherent", "hash map", hashMap, coherent);
+        run("coherent", "world", cached, coherent);
+        world.cleanup();
+    }
+
+    private static void run(String pattern, String name, BlockSource source, int[] coordinates) {
+        long checksum = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            checksum += lookUpAll(source, coordinates);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            checksum += lookUpAll(source, coordinates);
+        }
+        double nanosPerLookup = (System.nanoTime() - start) / (double) MEASURED_ROUNDS / (coordinates.length / 3);
+        System.out.printf("%-9s %-9s %6.2f ns/lookup  (checksum %d)%n", pattern, name, nanosPerLookup, checksum);
+    }
+
+    private static long lookUpAll(BlockSource source, int[] coordinates) {
+        long sum = 0;
+        for (int i = 0; i < coordinates.length; i += 3) {
+            sum += source.getBlock(coordinates[i], coordinates[i + 1], coordinates[i + 2]);
+        }
+        return sum;
+    }
+
+    // Uniformly spread over the loaded area
+    private static int[] randomCoordinates(int extent) {
+        SplittableRandom random = new SplittableRandom(1);
+        int[] coordinates = new int[LOOKUPS * 3];
+        for (int i = 0; i < coordinates.length; i += 3) {
+            coordinates[i] = random.nextInt(-extent, extent);
+            coordinates[i + 1] = random.nextInt(Chunk.HEIGHT);
+            coordinates[i + 2] = random.nextInt(-extent, extent);
+        }
+        return coordinates;
+    }
+
+    // The blocks around a player-sized box at each step of a random walk, as collision checks them
+    private static int[] collisionBoxes(int extent) {
+        SplittableRandom random = new SplittableRandom(2);
+        int[] coordinates = new int[LOOKUPS * 3];
+        int x = 0;
+        int y = 64;
+        int z = 0;
+        int i = 0;
+        while (i < coordinates.length) {
+            x = Math.max(-extent + 1, Math.min(extent - 2, x + random.nextInt(-1, 2)));
+            y = Math.max(0, Math.min(Chunk.HEIGHT - 3, y + random.nextInt(-1, 2)));
+            z = Math.max(-extent + 1, Math.min(extent - 2, z + random.nextInt(-1, 2)));
+            for (int by = y; by < y + 3 && i < coordinates.length; by++) {
+                for (int bx = x - 1; bx <= x + 1 && i < coordinates.length; bx++) {
+                    for (int bz = z - 1; bz <= z + 1 && i < coordinates.length; bz++) {
+                        coordinates[i++] = bx;
+                        coordinates[i++] = by;
+                        coordinates[i++] = bz;
+                    }
+                }
+            }
+        }
+        return coordinates;
+    }
+}
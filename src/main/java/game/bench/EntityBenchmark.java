@@ -0,0 +1,84 @@
+package game.bench;
+
+import game.entity.EntityManager;
+import game.entity.EntityType;
+import game.world.Chunk;
+import game.world.TerrainGenerator;
+import game.world.World;
+
+import java.util.SplittableRandom;
+
+/**
+ * Measures entity physics throughput without a window: entities of every type are dropped and
+ * thrown over noise terrain and ticked on one thread, then split across every core.
+ * Usage: EntityBenchmark [entities] [radius] (defaults to 50000 entities over 8 chunks around the origin).
+ */
+public class EntityBenchmark {
+    private static final float TICK_SECONDS = 1.0f / 60;
+    private static final int WARMUP_TICKS = 200;
+    private static final int MEASURED_TICKS = 600;
+
+    public static void main(String[] args) {
+        int entityCount = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        int radius = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        World world = new World(12345L);
+        for (int x = -radius; x < radius; x++) {
+            for (int z = -radius; z < radius; z++) {
+                world.addChunk(world.generateChunk(x, z));
+            }
+        }
+        System.out.printf("%d entities over %d chunks, %d cores%n",
+            entityCount, 4 * radius * radius, Runtime.getRuntime().availableProcessors());
+
+        run("serial", world, entityCount, radius, Integer.MAX_VALUE);
+        run("parallel", world, entityCount, radius, 0);
+        world.cleanup();
+    }
+
+    private static void run(String name, World world, int entityCount, int radius, int parallelThreshold) {
+        EntityManager entities = spawn(world, entityCount, radius);
+        entities.setParallelThreshold(parallelThreshold);
+        for (int i = 0; i < WARMUP_TICKS; i++) {
+            entities.update(TICK_SECONDS);
+        }
+
+        // Fresh entities so both runs measure falling, landing and sliding alike
+        entities = spawn(world, entityCount, radius);
+        entities.setParallelThreshold(parallelThreshold);
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_TICKS; i++) {
+            entities.update(TICK_SECONDS);
+        }
+        double millisPerTick = (System.nanoTime() - start) / 1e6 / MEASURED_TICKS;
+
+        int[] grounded = new int[1];
+        for (int chunkX = -radius; chunkX < radius; chunkX++) {
+            for (int chunkZ = -radius; chunkZ < radius; chunkZ++) {
+                EntityManager counted = entities;
+                entities.forEachInChunk(chunkX, chunkZ, id -> {
+                    if (counted.isOnGround(id)) {
+                        grounded[0]++;
+                    }
+                });
+            }
+        }
+        System.out.printf("%-8s %6.2f ms/tick  %10.0f entity updates/s  %d of %d on the ground%n",
+            name, millisPerTick, entityCount / millisPerTick * 1000, grounded[0], entities.size());
+    }
+
+    private static EntityManager spawn(World world, int entityCount, int radius) {
+        TerrainGenerator generator = world.getGenerator();
+        EntityManager entities = new EntityManager(world);
+        SplittableRandom random = new SplittableRandom(1);
+        EntityType[] types = EntityType.values();
+        int extent = radius * Chunk.SIZE - 1;
+        for (int i = 0; i < entityCount; i++) {
+            int x = random.nextInt(-extent, extent);
+            int z = random.nextInt(-extent, extent);
+            float y = generator.getSurfaceHeight(x, z) + 1 + random.nextInt(30);
+            entities.spawn(types[i % types.length], x, y, z,
+                (float) random.nextDouble(-8, 8), (float) random.nextDouble(0, 10), (float) random.nextDouble(-8, 8));
+        }
+        return entities;
+    }
+}
@@ -0,0 +1,103 @@
+package game.bench;
+
+import game.renderer.MeshBuilder;
+import game.world.Chunk;
+import game.world.ChunkMesher;
+import game.world.ChunkProvider;
+import game.world.ChunkSnapshot;
+import game.world.GreedyMesher;
+import game.world.NoiseTerrainGenerator;
+import game.world.PerFaceMesher;
+import game.world.TerrainGenerator;
+import game.world.WorldSaveManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Compares quad and vertex counts of the chunk meshers on a saved world, or on generated terrain
+ * when the save holds no chunks.
+ * Usage: MeshingBenchmark [worldName] (defaults to world1, read from the saves directory; run with
+ * -DsaveDir=samples/saves to measure the sample world kept in the repository).
+ */
+public class MeshingBenchmark {
+    private static final int WARMUP_ROUNDS = 200;
+    private static final int MEASURED_ROUNDS = 1000;
+    // Chunks around the origin generated when the save is empty
+    private static final int GENERATED_RADIUS = 2;
+    private static final long GENERATED_SEED = 12345L;
+
+    public static void main(String[] args) {
+        String worldName = args.length > 0 ? args[0] : "world1";
+        WorldSaveManager saveManager = new WorldSaveManager(worldName);
+
+        List<Chunk> chunks = saveManager.readAllChunks();
+        saveManager.close();
+        if (chunks.isEmpty()) {
+            chunks = new ArrayList<>();
+            TerrainGenerator generator = new NoiseTerrainGenerator(GENERATED_SEED);
+            for (int x = -GENERATED_RADIUS; x <= GENERATED_RADIUS; x++) {
+                for (int z = -GENERATED_RADIUS; z <= GENERATED_RADIUS; z++) {
+                    chunks.add(generator.generate(x, z));
+                }
+            }
+            System.out.printf("No chunks saved in %s, generated %d with seed %d%n", saveManager.getSavePath(), chunks.size(), GENERATED_SEED);
+        } else {
+            System.out.printf("Loaded %d chunks from %s%n", chunks.size(), saveManager.getSavePath());
+        }
+
+        Map<Long, Chunk> loaded = new HashMap<>();
+        for (Chunk chunk : chunks) {
+            loaded.put(((long) chunk.getX() << 32) | (chunk.getZ() & 0xFFFFFFFFL), chunk);
+        }
+        ChunkProvider neighbors = (x, z) -> loaded.get(((long) x << 32) | (z & 0xFFFFFFFFL));
+
+        run("per-face", new PerFaceMesher(), chunks, null, 1);
+        run("greedy", new GreedyMesher(), chunks, null, 1);
+        run("per-face, neighbor culling", new PerFaceMesher(), chunks, neighbors, 1);
+        run("greedy, neighbor culling", new GreedyMesher(), chunks, neighbors, 1);
+        run("greedy, 2x LOD", new GreedyMesher(), chunks, neighbors, 2);
+        run("greedy, 4x LOD", new GreedyMesher(), chunks, neighbors, 4);
+    }
+
+    // Scale above 1 meshes downsampled snapshots, the time includes downsampling as in the game
+    private static void run(String name, ChunkMesher mesher, List<Chunk> chunks, ChunkProvider neighbors, int scale) {
+        // Empty sections are never meshed, only the allocated ones are measured
+        List<ChunkSnapshot> snapshots = chunks.stream()
+            .flatMap(chunk -> IntStream.range(0, Chunk.SECTIONS)
+                .filter(sectionY -> chunk.getSection(sectionY) != null)
+                .mapToObj(sectionY -> new ChunkSnapshot(chunk, sectionY, neighbors)))
+            .collect(Collectors.toList());
+
+        long quads = 0;
+        long vertices = 0;
+        for (ChunkSnapshot snapshot : snapshots) {
+            MeshBuilder meshData = MeshBuilder.get();
+            mesher.mesh(scale > 1 ? snapshot.downsample(scale) : snapshot, meshData);
+            quads += meshData.getQuadCount();
+            vertices += meshData.getVertexCount();
+        }
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            meshAll(mesher, snapshots, scale);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            meshAll(mesher, snapshots, scale);
+        }
+        double microsPerSection = (System.nanoTime() - start) / 1000.0 / MEASURED_ROUNDS / snapshots.size();
+
+        System.out.printf("%-28s quads: %7d  vertices: %7d  bytes: %8d  %.1f us/section%n",
+            name, quads, vertices, vertices * MeshBuilder.BYTES_PER_VERTEX, microsPerSection);
+    }
+
+    private static void meshAll(ChunkMesher mesher, List<ChunkSnapshot> snapshots, int scale) {
+        for (ChunkSnapshot snapshot : snapshots) {
+            mesher.mesh(scale > 1 ? snapshot.downsample(scale) : snapshot, MeshBuilder.get());
+        }
+    }
+}
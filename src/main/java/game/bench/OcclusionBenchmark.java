@@ -0,0 +1,145 @@
+package game.bench;
+
+import game.renderer.MeshBuilder;
+import game.world.Block;
+import game.world.Chunk;
+import game.world.ChunkProvider;
+import game.world.ChunkSnapshot;
+import game.world.GreedyMesher;
+import game.world.NoiseTerrainGenerator;
+import game.world.OcclusionCuller;
+import game.world.SectionConnectivity;
+import game.world.TerrainGenerator;
+import org.joml.FrustumIntersection;
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compares how many sections frustum culling alone and frustum plus occlusion culling leave to draw,
+ * from a camera on the surface and from one in a cave, looking around horizontally.
+ * Usage: OcclusionBenchmark [seed] [radius] (defaults to seed 12345 and 10 chunks around the origin).
+ */
+public class OcclusionBenchmark {
+    private static final int ROUNDS = 200;
+    private static final int DIRECTIONS = 8;
+
+    public static void main(String[] args) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 12345L;
+        int radius = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        TerrainGenerator generator = new NoiseTerrainGenerator(seed);
+
+        Map<Long, Chunk> chunks = new HashMap<>();
+        for (int x = -radius; x <= radius; x++) {
+            for (int z = -radius; z <= radius; z++) {
+                chunks.put(key(x, z), generator.generate(x, z));
+            }
+        }
+        ChunkProvider neighbors = (x, z) -> chunks.get(key(x, z));
+
+        // Connectivity and whether the mesh has any faces, as the mesh workers would find them
+        Map<Long, long[]> sections = new HashMap<>();
+        for (Chunk chunk : chunks.values()) {
+            long[] column = new long[Chunk.SECTIONS * 2];
+            for (int sectionY = 0; sectionY < Chunk.SECTIONS; sectionY++) {
+                if (chunk.getSection(sectionY) == null) {
+                    column[sectionY * 2] = SectionConnectivity.ALL;
+                    continue;
+                }
+                ChunkSnapshot snapshot = new ChunkSnapshot(chunk, sectionY, neighbors);
+                MeshBuilder meshData = MeshBuilder.get();
+                new GreedyMesher().mesh(snapshot, meshData);
+                column[sectionY * 2] = SectionConnectivity.compute(snapshot);
+                column[sectionY * 2 + 1] = meshData.getQuadCount();
+            }
+            sections.put(key(chunk.getX(), chunk.getZ()), column);
+        }
+        OcclusionCuller.SectionGraph graph = new OcclusionCuller.SectionGraph() {
+            @Override
+            public boolean isColumnLoaded(int chunkX, int chunkZ) {
+                return sections.containsKey(key(chunkX, chunkZ));
+            }
+
+            @Override
+            public long getConnectivity(int chunkX, int sectionY, int chunkZ) {
+                return sections.get(key(chunkX, chunkZ))[sectionY * 2];
+            }
+        };
+        System.out.printf("%d columns around the origin, seed %d%n", chunks.size(), seed);
+
+        int surface = generator.getSurfaceHeight(8, 8);
+        run("surface", new Vector3f(8, surface + 2, 8), chunks, sections, graph);
+        run("cave", findCave(chunks.get(key(0, 0)), surface), chunks, sections, graph);
+    }
+
+    private static void run(String name, Vector3f camera, Map<Long, Chunk> chunks, Map<Long, long[]> sections,
+                            OcclusionCuller.SectionGraph graph) {
+        OcclusionCuller culler = new OcclusionCuller();
+        FrustumIntersection frustum = new FrustumIntersection();
+        Matrix4f projection = new Matrix4f().perspective((float) Math.toRadians(70), 16f / 9f, 0.1f, 1000f);
+        Matrix4f viewProjection = new Matrix4f();
+        long inFrustum = 0;
+        long[] visible = new long[1];
+        long nanos = 0;
+
+        for (int direction = 0; direction < DIRECTIONS; direction++) {
+            float yaw = (float) (2 * Math.PI * direction / DIRECTIONS);
+            frustum.set(projection.rotateY(yaw, viewProjection).translate(-camera.x, -camera.y, -camera.z));
+            inFrustum += countInFrustum(frustum, chunks, sections);
+
+            culler.cull(graph, frustum, camera, (x, y, z) -> {
+                if (sections.get(key(x, z))[y * 2 + 1] > 0) {
+                    visible[0]++;
+                }
+            });
+            long start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                culler.cull(graph, frustum, camera, (x, y, z) -> { });
+            }
+            nanos += System.nanoTime() - start;
+        }
+
+        System.out.printf("%-8s camera at %.0f %.0f %.0f  frustum: %6.1f sections  occlusion: %6.1f sections (%.0f%%)  %.1f us/cull%n",
+            name, camera.x, camera.y, camera.z, inFrustum / (double) DIRECTIONS, visible[0] / (double) DIRECTIONS,
+            100.0 * visible[0] / Math.max(1, inFrustum), nanos / 1000.0 / ROUNDS / DIRECTIONS);
+    }
+
+    // Drawable sections inside the frustum, what frustum culling alone would draw
+    private static int countInFrustum(FrustumIntersection frustum, Map<Long, Chunk> chunks, Map<Long, long[]> sections) {
+        int count = 0;
+        for (Chunk chunk : chunks.values()) {
+            long[] column = sections.get(key(chunk.getX(), chunk.getZ()));
+            for (int sectionY = 0; sectionY < Chunk.SECTIONS; sectionY++) {
+                float minX = chunk.getX() * Chunk.SIZE - 0.5f;
+                float minY = sectionY * Chunk.SIZE - 0.5f;
+                float minZ = chunk.getZ() * Chunk.SIZE - 0.5f;
+                if (column[sectionY * 2 + 1] > 0 && frustum.testAab(minX, minY, minZ,
+                        minX + Chunk.SIZE, minY + Chunk.SIZE, minZ + Chunk.SIZE)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    // The lowest air block of the origin chunk at least 16 blocks below the surface, or a point
+    // inside solid rock if the chunk has no cave
+    private static Vector3f findCave(Chunk chunk, int surface) {
+        for (int y = 1; y < surface - 16; y++) {
+            for (int z = 0; z < Chunk.SIZE; z++) {
+                for (int x = 0; x < Chunk.SIZE; x++) {
+                    if (chunk.getBlock(x, y, z) == Block.AIR) {
+                        return new Vector3f(x, y, z);
+                    }
+                }
+            }
+        }
+        return new Vector3f(8, surface / 2f, 8);
+    }
+
+    private static long key(int x, int z) {
+        return ((long) x << 32) | (z & 0xFFFFFFFFL);
+    }
+}
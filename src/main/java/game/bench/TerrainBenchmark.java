@@ -0,0 +1,69 @@
+package game.bench;
+
+import game.world.Chunk;
+import game.world.ChunkCodec;
+import game.world.NoiseTerrainGenerator;
+import game.world.TerrainGenerator;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Measures terrain generation throughput on one thread and on a fork-join pool using every core,
+ * and checks that both produce byte-identical chunks.
+ * Usage: TerrainBenchmark [seed] [gridSize] (defaults to seed 12345 and a 32x32 chunk grid).
+ */
+public class TerrainBenchmark {
+    private static final int WARMUP_ROUNDS = 2;
+
+    public static void main(String[] args) throws Exception {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 12345L;
+        int gridSize = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+        int cores = Runtime.getRuntime().availableProcessors();
+        TerrainGenerator generator = new NoiseTerrainGenerator(seed);
+        System.out.printf("Generating %dx%d chunks, %d blocks tall, seed %d%n", gridSize, gridSize, Chunk.HEIGHT, seed);
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            generateAll(generator, gridSize, 1);
+        }
+
+        long start = System.nanoTime();
+        List<Chunk> serial = generateAll(generator, gridSize, 1);
+        report("serial", gridSize, 1, System.nanoTime() - start);
+
+        start = System.nanoTime();
+        List<Chunk> parallel = generateAll(generator, gridSize, cores);
+        report("parallel", gridSize, cores, System.nanoTime() - start);
+
+        System.out.println(encodeAll(serial).equals(encodeAll(parallel))
+            ? "Serial and parallel output match"
+            : "MISMATCH between serial and parallel output");
+    }
+
+    // Generates the grid on a pool of the given size, in grid order
+    private static List<Chunk> generateAll(TerrainGenerator generator, int gridSize, int threads) throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            return pool.submit(() -> IntStream.range(0, gridSize * gridSize)
+                .parallel()
+                .mapToObj(i -> generator.generate(i % gridSize - gridSize / 2, i / gridSize - gridSize / 2))
+                .collect(Collectors.toList())).get();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static List<ByteBuffer> encodeAll(List<Chunk> chunks) {
+        return chunks.stream().map(ChunkCodec::encode).collect(Collectors.toList());
+    }
+
+    private static void report(String name, int gridSize, int threads, long nanos) {
+        double seconds = nanos / 1e9;
+        double chunksPerSecond = gridSize * gridSize / seconds;
+        System.out.printf("%-8s %2d threads  %8.1f chunks/s  %8.1f chunks/s/core  %.2f ms/chunk%n",
+            name, threads, chunksPerSecond, chunksPerSecond / threads, seconds * 1000 * threads / (gridSize * gridSize));
+    }
+}
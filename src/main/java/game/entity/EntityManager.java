@@ -0,0 +1,366 @@
+package game.entity;
+
+import game.world.Block;
+import game.world.BlockCursor;
+import game.world.BoxSweep;
+import game.world.Chunk;
+import game.world.ChunkMap;
+import game.world.LongMap;
+import game.world.World;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Every entity besides the player, such as mobs, dropped items and projectiles.
+ *
+ * State is kept as parallel primitive arrays indexed by a dense entity index, so physics runs over
+ * contiguous memory. Removing an entity moves the last one into its index; callers hold the stable
+ * id returned by spawn() instead. Entities are also bucketed by the chunk they are in for spatial
+ * queries. Entities in chunks that are not loaded are frozen. Use from the GL thread only.
+ */
+public class EntityManager {
+    private static final float GRAVITY = -20.0f;
+    private static final int INITIAL_CAPACITY = 256;
+    // Entities integrated by one task
+    private static final int BATCH_SIZE = 2048;
+    private static final int CHUNK_SHIFT = Integer.numberOfTrailingZeros(Chunk.SIZE);
+
+    private final World world;
+    // One per thread integrating batches, reused across ticks; a cursor notices by itself when the
+    // chunk it has cached was unloaded
+    private final ThreadLocal<BlockCursor> blockCursors;
+    private final EntityType[] entityTypes = EntityType.values();
+    // Entity counts from which physics is split across the common fork-join pool
+    private int parallelThreshold = 4 * BATCH_SIZE;
+
+    // By entity index
+    private int count;
+    private float[] x;
+    private float[] y;
+    private float[] z;
+    private float[] vx;
+    private float[] vy;
+    private float[] vz;
+    private byte[] types;
+    private boolean[] onGround;
+    private int[] ids;
+    private long[] chunkKeys;
+    private int[] bucketSlots;
+
+    // By id, -1 for ids not in use
+    private int[] indices;
+    private int[] freeIds;
+    private int freeIdCount;
+    private int nextId;
+
+    private final LongMap<Bucket> buckets = new LongMap<>();
+
+    public EntityManager(World world) {
+        this.world = world;
+        this.blockCursors = ThreadLocal.withInitial(() -> new BlockCursor(world));
+        allocate(INITIAL_CAPACITY);
+        indices = new int[INITIAL_CAPACITY];
+        Arrays.fill(indices, -1);
+        freeIds = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Adds an entity with its bottom center at x, y, z and returns its id.
+     */
+    public int spawn(EntityType type, float x, float y, float z, float vx, float vy, float vz) {
+        if (count == this.x.length) {
+            allocate(count * 2);
+        }
+        int id = freeIdCount > 0 ? freeIds[--freeIdCount] : nextId++;
+        if (id >= indices.length) {
+            int oldLength = indices.length;
+            indices = Arrays.copyOf(indices, oldLength * 2);
+            Arrays.fill(indices, oldLength, indices.length, -1);
+        }
+
+        int index = count++;
+        indices[id] = index;
+        ids[index] = id;
+        types[index] = (byte) type.ordinal();
+        this.x[index] = x;
+        this.y[index] = y;
+        this.z[index] = z;
+        this.vx[index] = vx;
+        this.vy[index] = vy;
+        this.vz[index] = vz;
+        onGround[index] = false;
+        chunkKeys[index] = chunkKey(x, z);
+        addToBucket(index);
+        return id;
+    }
+
+    public boolean remove(int id) {
+        if (!isAlive(id)) {
+            return false;
+        }
+        int index = indices[id];
+        removeFromBucket(index);
+
+        // Fill the hole with the last entity so the arrays stay dense
+        int last = --count;
+        if (index != last) {
+            ids[index] = ids[last];
+            types[index] = types[last];
+            x[index] = x[last];
+            y[index] = y[last];
+            z[index] = z[last];
+            vx[index] = vx[last];
+            vy[index] = vy[last];
+            vz[index] = vz[last];
+            onGround[index] = onGround[last];
+            chunkKeys[index] = chunkKeys[last];
+            bucketSlots[index] = bucketSlots[last];
+            indices[ids[index]] = index;
+        }
+
+        indices[id] = -1;
+        if (freeIdCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeIds.length * 2);
+        }
+        freeIds[freeIdCount++] = id;
+        return true;
+    }
+
+    /**
+     * Advances every entity by one tick: gravity, drag and movement swept against the blocks.
+     */
+    public void update(float deltaTime) {
+        int batches = (count + BATCH_SIZE - 1) / BATCH_SIZE;
+        if (count >= parallelThreshold) {
+            // Entities only write their own slots and the world is not changed meanwhile
+            IntStream.range(0, batches).parallel().forEach(batch -> integrate(batch, deltaTime));
+        } else {
+            for (int batch = 0; batch < batches; batch++) {
+                integrate(batch, deltaTime);
+            }
+        }
+
+        for (int index = 0; index < count; index++) {
+            long key = chunkKey(x[index], z[index]);
+            if (key != chunkKeys[index]) {
+                removeFromBucket(index);
+                chunkKeys[index] = key;
+                addToBucket(index);
+            }
+        }
+    }
+
+    private void integrate(int batch, float deltaTime) {
+        BlockCursor blocks = blockCursors.get();
+        ChunkMap chunks = world.getChunks();
+        int end = Math.min(count, (batch + 1) * BATCH_SIZE);
+        for (int i = batch * BATCH_SIZE; i < end; i++) {
+            long key = chunkKeys[i];
+            if (!chunks.contains((int) (key >> 32), (int) key)) {
+                continue;
+            }
+            EntityType type = entityTypes[types[i]];
+            float width = type.getWidth();
+            float height = type.getHeight();
+
+            // Stable for any time step, unlike subtracting drag * deltaTime
+            float damping = 1 / (1 + type.getDrag() * deltaTime);
+            float velocityX = vx[i] * damping;
+            float velocityY = (vy[i] + GRAVITY * type.getGravityScale() * deltaTime) * damping;
+            float velocityZ = vz[i] * damping;
+
+            float dy = velocityY * deltaTime;
+            float movedY = BoxSweep.sweep(blocks, x[i], y[i], z[i], width, height, 1, dy);
+            y[i] += movedY;
+            onGround[i] = dy < 0 && movedY != dy;
+            if (movedY != dy) {
+                velocityY = 0;
+            }
+
+            float dx = velocityX * deltaTime;
+            float movedX = BoxSweep.sweep(blocks, x[i], y[i], z[i], width, height, 0, dx);
+            x[i] += movedX;
+            if (movedX != dx) {
+                velocityX = 0;
+            }
+
+            float dz = velocityZ * deltaTime;
+            float movedZ = BoxSweep.sweep(blocks, x[i], y[i], z[i], width, height, 2, dz);
+            z[i] += movedZ;
+            if (movedZ != dz) {
+                velocityZ = 0;
+            }
+
+            vx[i] = velocityX;
+            vy[i] = velocityY;
+            vz[i] = velocityZ;
+        }
+    }
+
+    /**
+     * Calls visitor with the id of every entity in the given chunk.
+     */
+    public void forEachInChunk(int chunkX, int chunkZ, IntConsumer visitor) {
+        Bucket bucket = buckets.get(ChunkMap.key(chunkX, chunkZ));
+        if (bucket == null) {
+            return;
+        }
+        for (int i = 0; i < bucket.size; i++) {
+            visitor.accept(bucket.ids[i]);
+        }
+    }
+
+    /**
+     * Calls visitor with the id of every entity whose position lies within radius of x, y, z,
+     * looking only at the chunks the radius reaches.
+     */
+    public void forEachWithin(float x, float y, float z, float radius, IntConsumer visitor) {
+        int minChunkX = blockToChunk(x - radius);
+        int maxChunkX = blockToChunk(x + radius);
+        int minChunkZ = blockToChunk(z - radius);
+        int maxChunkZ = blockToChunk(z + radius);
+        float radiusSquared = radius * radius;
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+            for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                Bucket bucket = buckets.get(ChunkMap.key(chunkX, chunkZ));
+                if (bucket == null) {
+                    continue;
+                }
+                for (int i = 0; i < bucket.size; i++) {
+                    int index = indices[bucket.ids[i]];
+                    float dx = this.x[index] - x;
+                    float dy = this.y[index] - y;
+                    float dz = this.z[index] - z;
+                    if (dx * dx + dy * dy + dz * dz <= radiusSquared) {
+                        visitor.accept(bucket.ids[i]);
+                    }
+                }
+            }
+        }
+    }
+
+    public boolean isAlive(int id) {
+        return id >= 0 && id < indices.length && indices[id] >= 0;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public EntityType getType(int id) {
+        return entityTypes[types[indices[id]]];
+    }
+
+    public float getX(int id) {
+        return x[indices[id]];
+    }
+
+    public float getY(int id) {
+        return y[indices[id]];
+    }
+
+    public float getZ(int id) {
+        return z[indices[id]];
+    }
+
+    public boolean isOnGround(int id) {
+        return onGround[indices[id]];
+    }
+
+    public void setVelocity(int id, float vx, float vy, float vz) {
+        int index = indices[id];
+        this.vx[index] = vx;
+        this.vy[index] = vy;
+        this.vz[index] = vz;
+    }
+
+    /**
+     * Sets the entity count from which update() spreads physics over all cores.
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    private void addToBucket(int index) {
+        Bucket bucket = buckets.get(chunkKeys[index]);
+        if (bucket == null) {
+            bucket = new Bucket();
+            buckets.put(chunkKeys[index], bucket);
+        }
+        bucketSlots[index] = bucket.add(ids[index]);
+    }
+
+    private void removeFromBucket(int index) {
+        Bucket bucket = buckets.get(chunkKeys[index]);
+        int moved = bucket.removeAt(bucketSlots[index]);
+        if (moved >= 0) {
+            bucketSlots[indices[moved]] = bucketSlots[index];
+        }
+        if (bucket.size == 0) {
+            buckets.remove(chunkKeys[index]);
+        }
+    }
+
+    // Chunk holding the block at x, z; blocks are centered on their coordinates
+    private static long chunkKey(float x, float z) {
+        return ChunkMap.key(blockToChunk(x), blockToChunk(z));
+    }
+
+    private static int blockToChunk(float coordinate) {
+        return Block.toBlockCoordinate(coordinate) >> CHUNK_SHIFT;
+    }
+
+    private void allocate(int capacity) {
+        if (x == null) {
+            x = new float[capacity];
+            y = new float[capacity];
+            z = new float[capacity];
+            vx = new float[capacity];
+            vy = new float[capacity];
+            vz = new float[capacity];
+            types = new byte[capacity];
+            onGround = new boolean[capacity];
+            ids = new int[capacity];
+            chunkKeys = new long[capacity];
+            bucketSlots = new int[capacity];
+            return;
+        }
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        z = Arrays.copyOf(z, capacity);
+        vx = Arrays.copyOf(vx, capacity);
+        vy = Arrays.copyOf(vy, capacity);
+        vz = Arrays.copyOf(vz, capacity);
+        types = Arrays.copyOf(types, capacity);
+        onGround = Arrays.copyOf(onGround, capacity);
+        ids = Arrays.copyOf(ids, capacity);
+        chunkKeys = Arrays.copyOf(chunkKeys, capacity);
+        bucketSlots = Arrays.copyOf(bucketSlots, capacity);
+    }
+
+    // Ids of the entities in one chunk, unordered
+    private static class Bucket {
+        int[] ids = new int[8];
+        int size;
+
+        int add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size] = id;
+            return size++;
+        }
+
+        // Removes the id at slot by moving the last one into it; returns the moved id or -1
+        int removeAt(int slot) {
+            int last = --size;
+            if (slot == last) {
+                return -1;
+            }
+            ids[slot] = ids[last];
+            return ids[slot];
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package game.entity;
+
+/**
+ * Kinds of entities with their collision box and how they move.
+ */
+public enum EntityType {
+    MOB(0.6f, 1.8f, 1.0f, 0.5f),
+    ITEM(0.25f, 0.25f, 1.0f, 2.0f),
+    PROJECTILE(0.25f, 0.25f, 0.5f, 0.1f);
+
+    private final float width;
+    private final float height;
+    // Fraction of full gravity applied
+    private final float gravityScale;
+    // Air resistance, the fraction of velocity lost per second at small time steps
+    private final float drag;
+
+    EntityType(float width, float height, float gravityScale, float drag) {
+        this.width = width;
+        this.height = height;
+        this.gravityScale = gravityScale;
+        this.drag = drag;
+    }
+
+    public float getWidth() {
+        return width;
+    }
+
+    public float getHeight() {
+        return height;
+    }
+
+    public float getGravityScale() {
+        return gravityScale;
+    }
+
+    public float getDrag() {
+        return drag;
+    }
+}
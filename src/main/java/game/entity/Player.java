@@ -2,6 +2,9 @@ package game.entity;
 
 import game.Camera;
 import game.world.Block;
+import game.world.BlockCursor;
+import game.world.BoxSweep;
+import game.world.VoxelRaycast;
 import game.world.World;
 import org.joml.Vector3f;
 
@@ -10,19 +13,33 @@ public class Player {
     private static final float PLAYER_WIDTH = 0.6f;
     private static final float GRAVITY = -20.0f;
     private static final float JUMP_FORCE = 8.0f;
+    // Terminal velocity, blocks per second
+    private static final float MAX_FALL_SPEED = 60.0f;
+    // Falling this far below the bottom of the world puts the player back on the surface
+    private static final float VOID_DEPTH = 64.0f;
+    // How far away blocks can be placed and broken
+    private static final float REACH = 5.0f;
 
     private Vector3f position;
+    // Position at the start of the last tick, the camera is interpolated from it towards position
+    private final Vector3f previousPosition = new Vector3f();
     private Vector3f velocity;
     private boolean onGround;
     private Camera camera;
     private World world;
     private Inventory inventory;
     private int selectedSlot;
+    // Reused by every pick, input picks every frame while a mouse button is held
+    private final VoxelRaycast raycast = new VoxelRaycast();
+    private final BlockCursor blocks;
+    private final Vector3f lookDirection = new Vector3f();
 
     public Player(World world, Camera camera) {
         this.world = world;
         this.camera = camera;
+        this.blocks = new BlockCursor(world);
         this.position = new Vector3f(0, 10, 0); // Start lower
+        this.previousPosition.set(position);
         this.velocity = new Vector3f();
         this.inventory = new Inventory();
         this.selectedSlot = 0;
@@ -33,70 +50,70 @@ public class Player {
         inventory.addItem(new ItemStack(Block.STONE, 64));
     }
 
+    /**
+     * Advances the player by one simulation tick of deltaTime seconds.
+     */
     public void update(float deltaTime) {
-        // Apply gravity
-        if (!onGround) {
-            velocity.y += GRAVITY * deltaTime;
+        previousPosition.set(position);
+        // Hold still until the chunk below the player has been streamed in
+        if (!world.isLoaded(Block.toBlockCoordinate(position.x), Block.toBlockCoordinate(position.z))) {
+            return;
         }
 
-        // Update position with velocity
-        Vector3f newPosition = new Vector3f(position).add(
-            new Vector3f(velocity).mul(deltaTime)
-        );
+        // Gravity applies every tick, standing on the ground just clamps the fall back to zero
+        velocity.y = Math.max(-MAX_FALL_SPEED, velocity.y + GRAVITY * deltaTime);
 
-        // Check collisions and adjust position
-        moveWithCollision(newPosition);
-
-        // Update camera position
-        camera.getPosition().set(position.x, position.y + PLAYER_HEIGHT * 0.8f, position.z);
-    }
+        // Vertical first, so landing is resolved before sliding along walls
+        float dy = velocity.y * deltaTime;
+        float movedY = sweep(1, dy);
+        position.y += movedY;
+        onGround = dy < 0 && movedY != dy;
+        if (movedY != dy) {
+            velocity.y = 0;
+        }
 
-    private void moveWithCollision(Vector3f newPosition) {
-        // Check X axis collision
-        if (!checkCollision(newPosition.x, position.y, position.z)) {
-            position.x = newPosition.x;
-        } else {
+        float dx = velocity.x * deltaTime;
+        float movedX = sweep(0, dx);
+        position.x += movedX;
+        if (movedX != dx) {
             velocity.x = 0;
         }
 
-        // Check Y axis collision
-        if (!checkCollision(position.x, newPosition.y, position.z)) {
-            position.y = newPosition.y;
-            onGround = false;
-        } else {
-            if (velocity.y < 0) {
-                onGround = true;
-            }
-            velocity.y = 0;
+        float dz = velocity.z * deltaTime;
+        float movedZ = sweep(2, dz);
+        position.z += movedZ;
+        if (movedZ != dz) {
+            velocity.z = 0;
         }
 
-        // Check Z axis collision
-        if (!checkCollision(position.x, position.y, newPosition.z)) {
-            position.z = newPosition.z;
-        } else {
-            velocity.z = 0;
+        if (position.y < -VOID_DEPTH) {
+            respawnOnSurface();
         }
     }
 
-    private boolean checkCollision(float x, float y, float z) {
-        // Check collision with blocks in a box around the player
-        float minX = x - PLAYER_WIDTH / 2;
-        float maxX = x + PLAYER_WIDTH / 2;
-        float minY = y;
-        float maxY = y + PLAYER_HEIGHT;
-        float minZ = z - PLAYER_WIDTH / 2;
-        float maxZ = z + PLAYER_WIDTH / 2;
-
-        for (int bx = (int) Math.floor(minX); bx <= (int) Math.floor(maxX); bx++) {
-            for (int by = (int) Math.floor(minY); by <= (int) Math.floor(maxY); by++) {
-                for (int bz = (int) Math.floor(minZ); bz <= (int) Math.floor(maxZ); bz++) {
-                    if (!Block.isTransparent(world.getBlock(bx, by, bz))) {
-                        return true;
-                    }
-                }
-            }
-        }
-        return false;
+    private void respawnOnSurface() {
+        int x = Block.toBlockCoordinate(position.x);
+        int z = Block.toBlockCoordinate(position.z);
+        position.y = world.getGenerator().getSurfaceHeight(x, z) + 1;
+        // Jump straight there instead of interpolating the camera through the terrain
+        previousPosition.set(position);
+        velocity.zero();
+        onGround = false;
+    }
+
+    /**
+     * Places the camera at the player's eyes, alpha of the way from the position before the last
+     * tick to the current one, so motion stays smooth when frames fall between ticks.
+     */
+    public void updateCamera(float alpha) {
+        camera.setPosition(
+            previousPosition.x + (position.x - previousPosition.x) * alpha,
+            previousPosition.y + (position.y - previousPosition.y) * alpha + PLAYER_HEIGHT * 0.8f,
+            previousPosition.z + (position.z - previousPosition.z) * alpha);
+    }
+
+    private float sweep(int axis, float distance) {
+        return BoxSweep.sweep(blocks, position.x, position.y, position.z, PLAYER_WIDTH, PLAYER_HEIGHT, axis, distance);
     }
 
     public void jump() {
@@ -119,67 +136,29 @@ public class Player {
 
     public boolean placeBlock() {
         ItemStack selectedStack = inventory.getItem(selectedSlot);
-        if (selectedStack == null || selectedStack.isEmpty()) {
+        if (selectedStack == null || selectedStack.isEmpty() || !pickBlock() || !raycast.hasFace()) {
             return false;
         }
 
-        // Get block position player is looking at
-        Vector3f lookDir = new Vector3f(
-            (float) Math.sin(Math.toRadians(camera.getYaw())) * (float) Math.cos(Math.toRadians(camera.getPitch())),
-            (float) -Math.sin(Math.toRadians(camera.getPitch())),
-            (float) Math.cos(Math.toRadians(camera.getYaw())) * (float) Math.cos(Math.toRadians(camera.getPitch()))
-        );
-
-        // Ray casting to find block position
-        Vector3f pos = new Vector3f(camera.getPosition());
-        Vector3f step = new Vector3f(lookDir).normalize().mul(0.05f);
-        float maxDistance = 5.0f;
-        float distance = 0;
-
-        while (distance < maxDistance) {
-            byte block = world.getBlock((int) pos.x, (int) pos.y, (int) pos.z);
-            if (!Block.isTransparent(block)) {
-                // Place block adjacent to the hit block
-                pos.sub(step);
-                world.setBlock((int) pos.x, (int) pos.y, (int) pos.z, selectedStack.getBlockType());
-                selectedStack.decrease();
-                return true;
-            }
-            pos.add(step);
-            distance += 0.05f;
-        }
-
-        return false;
+        // Place against the face the ray hit
+        world.setBlock(raycast.getX() + raycast.getNormalX(), raycast.getY() + raycast.getNormalY(),
+            raycast.getZ() + raycast.getNormalZ(), selectedStack.getBlockType());
+        selectedStack.decrease();
+        return true;
     }
 
     public boolean breakBlock() {
-        // Similar to placeBlock, but removes the block instead
-        Vector3f lookDir = new Vector3f(
-            (float) Math.sin(Math.toRadians(camera.getYaw())) * (float) Math.cos(Math.toRadians(camera.getPitch())),
-            (float) -Math.sin(Math.toRadians(camera.getPitch())),
-            (float) Math.cos(Math.toRadians(camera.getYaw())) * (float) Math.cos(Math.toRadians(camera.getPitch()))
-        );
-
-        Vector3f pos = new Vector3f(camera.getPosition());
-        Vector3f step = new Vector3f(lookDir).normalize().mul(0.05f);
-        float maxDistance = 5.0f;
-        float distance = 0;
-
-        while (distance < maxDistance) {
-            int x = (int) pos.x;
-            int y = (int) pos.y;
-            int z = (int) pos.z;
-            byte block = world.getBlock(x, y, z);
-            if (!Block.isTransparent(block)) {
-                world.setBlock(x, y, z, Block.AIR);
-                inventory.addItem(new ItemStack(block, 1));
-                return true;
-            }
-            pos.add(step);
-            distance += 0.05f;
+        if (!pickBlock()) {
+            return false;
         }
+        world.setBlock(raycast.getX(), raycast.getY(), raycast.getZ(), Block.AIR);
+        inventory.addItem(new ItemStack(raycast.getBlock(), 1));
+        return true;
+    }
 
-        return false;
+    // Finds the block the camera looks at within reach, the hit is left in raycast
+    private boolean pickBlock() {
+        return raycast.cast(world, camera.getPosition(), camera.getDirection(lookDirection), REACH);
     }
 
     public Vector3f getPosition() {
@@ -188,6 +167,8 @@ public class Player {
 
     public void setPosition(Vector3f position) {
         this.position = position;
+        // Teleports are not interpolated
+        this.previousPosition.set(position);
     }
 
     public Inventory getInventory() {
@@ -0,0 +1,178 @@
+package game.renderer;
+
+import org.joml.Matrix4f;
+import org.joml.Vector4f;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL33;
+import org.lwjgl.opengl.GL40;
+import org.lwjgl.opengl.GL42;
+import org.lwjgl.opengl.GL43;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Draws every section in one glMultiDrawElementsIndirect call per pass. Needs OpenGL 4.3.
+ *
+ * Each draw command points at a section's slice of the VertexArena and uses its index as base
+ * instance, which selects the section's camera-relative offset from a per-instance attribute.
+ * With a cull shader the sections are tested against the frustum on the GPU, which zeroes the
+ * instance count of every command outside it.
+ */
+public class ChunkDrawBatch {
+    // count, instanceCount, firstIndex, baseVertex, baseInstance
+    private static final int COMMAND_INTS = 5;
+    private static final int OFFSET_FLOATS = 4;
+    private static final int OFFSET_ATTRIBUTE = 1;
+    private static final int WORKGROUP_SIZE = 64;
+
+    private final VertexArena arena;
+    private final Shader cullShader;
+    private final int sectionSize;
+    private final Vector4f[] frustumPlanes = new Vector4f[6];
+    private IntBuffer commands;
+    private FloatBuffer offsets;
+    private int drawCount;
+    private long vertexCount;
+    private int commandBufferId;
+    private int offsetBufferId;
+
+    /**
+     * cullShader is the linked chunk_cull.comp program, or null to draw every added section.
+     */
+    public ChunkDrawBatch(VertexArena arena, Shader cullShader, int sectionSize) {
+        this.arena = arena;
+        this.cullShader = cullShader;
+        this.sectionSize = sectionSize;
+        for (int i = 0; i < frustumPlanes.length; i++) {
+            frustumPlanes[i] = new Vector4f();
+        }
+        allocate(1024);
+    }
+
+    public static boolean isSupported() {
+        return GL.getCapabilities().OpenGL43;
+    }
+
+    public boolean isGpuCulling() {
+        return cullShader != null;
+    }
+
+    public void begin() {
+        commands.clear();
+        offsets.clear();
+        drawCount = 0;
+        vertexCount = 0;
+    }
+
+    /**
+     * Adds a section, placed at the given offset from the camera.
+     */
+    public void add(ChunkRenderer renderer, float offsetX, float offsetY, float offsetZ) {
+        if (!commands.hasRemaining()) {
+            allocate(drawCount * 2);
+        }
+        commands.put(renderer.getVertexCount()).put(1).put(0).put(renderer.getBaseVertex()).put(drawCount);
+        offsets.put(offsetX).put(offsetY).put(offsetZ).put(0);
+        drawCount++;
+        vertexCount += renderer.getVertexCount();
+    }
+
+    /**
+     * Uploads the commands added since begin() and, with GPU culling, culls them against the given
+     * camera-relative view-projection matrix. Leaves no program bound.
+     */
+    public void upload(Matrix4f cameraViewProjection) {
+        if (commandBufferId == 0) {
+            commandBufferId = GL15.glGenBuffers();
+            offsetBufferId = GL15.glGenBuffers();
+        }
+        commands.flip();
+        offsets.flip();
+        // Fresh storage every frame, so the driver never waits on last frame's draws
+        GL15.glBindBuffer(GL40.GL_DRAW_INDIRECT_BUFFER, commandBufferId);
+        GL15.glBufferData(GL40.GL_DRAW_INDIRECT_BUFFER, commands, GL15.GL_STREAM_DRAW);
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, offsetBufferId);
+        GL15.glBufferData(GL15.GL_ARRAY_BUFFER, offsets, GL15.GL_STREAM_DRAW);
+        commands.limit(commands.capacity());
+        offsets.limit(offsets.capacity());
+
+        if (cullShader == null || drawCount == 0) {
+            return;
+        }
+        for (int i = 0; i < frustumPlanes.length; i++) {
+            cameraViewProjection.frustumPlane(i, frustumPlanes[i]);
+        }
+        cullShader.bind();
+        cullShader.setUniform("frustumPlanes", frustumPlanes);
+        cullShader.setUniform("drawCount", drawCount);
+        cullShader.setUniform("sectionSize", (float) sectionSize);
+        GL43.glBindBufferBase(GL43.GL_SHADER_STORAGE_BUFFER, 0, commandBufferId);
+        GL43.glBindBufferBase(GL43.GL_SHADER_STORAGE_BUFFER, 1, offsetBufferId);
+        GL43.glDispatchCompute((drawCount + WORKGROUP_SIZE - 1) / WORKGROUP_SIZE, 1, 1);
+        // The draw reads the instance counts the cull pass wrote
+        GL42.glMemoryBarrier(GL43.GL_SHADER_STORAGE_BARRIER_BIT | GL42.GL_COMMAND_BARRIER_BIT);
+        cullShader.unbind();
+    }
+
+    /**
+     * Draws the uploaded commands with the arena's VAO.
+     */
+    public void draw() {
+        if (drawCount == 0) {
+            return;
+        }
+        arena.bind();
+        // Per-section offsets, advanced once per instance and selected by each command's base instance
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, offsetBufferId);
+        GL20.glVertexAttribPointer(OFFSET_ATTRIBUTE, 3, GL11.GL_FLOAT, false, OFFSET_FLOATS * Float.BYTES, 0);
+        GL33.glVertexAttribDivisor(OFFSET_ATTRIBUTE, 1);
+        GL20.glEnableVertexAttribArray(OFFSET_ATTRIBUTE);
+
+        GL15.glBindBuffer(GL40.GL_DRAW_INDIRECT_BUFFER, commandBufferId);
+        GL43.glMultiDrawElementsIndirect(GL11.GL_TRIANGLES, arena.getIndexType(), 0, drawCount, 0);
+
+        // Per-section draws leave the offset to the chunkOffset uniform
+        GL20.glDisableVertexAttribArray(OFFSET_ATTRIBUTE);
+    }
+
+    public int getDrawCount() {
+        return drawCount;
+    }
+
+    public long getVertexCount() {
+        return vertexCount;
+    }
+
+    private void allocate(int draws) {
+        IntBuffer grownCommands = ByteBuffer.allocateDirect(draws * COMMAND_INTS * Integer.BYTES)
+            .order(ByteOrder.nativeOrder()).asIntBuffer();
+        FloatBuffer grownOffsets = ByteBuffer.allocateDirect(draws * OFFSET_FLOATS * Float.BYTES)
+            .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        if (commands != null) {
+            commands.flip();
+            offsets.flip();
+            grownCommands.put(commands);
+            grownOffsets.put(offsets);
+        }
+        commands = grownCommands;
+        offsets = grownOffsets;
+    }
+
+    public void cleanup() {
+        if (commandBufferId != 0) {
+            GL15.glDeleteBuffers(commandBufferId);
+            GL15.glDeleteBuffers(offsetBufferId);
+            commandBufferId = 0;
+            offsetBufferId = 0;
+        }
+        if (cullShader != null) {
+            cullShader.cleanup();
+        }
+    }
+}
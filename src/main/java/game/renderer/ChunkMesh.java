@@ -0,0 +1,37 @@
+package game.renderer;
+
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+
+/**
+ * CPU-side mesh ready for upload. Built on a meshing thread and handed to the GL thread.
+ * Vertices come in groups of four per quad, indexed by the shared QuadIndexBuffer. They live in
+ * native memory, call free() once the mesh is uploaded or no longer needed.
+ */
+public class ChunkMesh {
+    private ByteBuffer vertices; // Null for empty meshes and after free()
+    private final int quadCount;
+
+    public ChunkMesh(ByteBuffer vertices, int quadCount) {
+        this.vertices = vertices;
+        this.quadCount = quadCount;
+    }
+
+    public ByteBuffer getVertices() {
+        return vertices;
+    }
+
+    public int getQuadCount() {
+        return quadCount;
+    }
+
+    public int getIndexCount() {
+        return quadCount * 6;
+    }
+
+    public void free() {
+        MemoryUtil.memFree(vertices);
+        vertices = null;
+    }
+}
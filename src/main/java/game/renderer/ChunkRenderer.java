@@ -1,95 +1,129 @@
 package game.renderer;
 
-import game.world.Chunk;
+import org.joml.FrustumIntersection;
+import org.joml.Vector3f;
+import org.joml.Vector3i;
 import org.lwjgl.opengl.GL11;
-import org.lwjgl.opengl.GL15;
-import org.lwjgl.opengl.GL20;
-import org.lwjgl.opengl.GL30;
-import org.lwjgl.system.MemoryUtil;
-
-import java.nio.FloatBuffer;
-import java.nio.IntBuffer;
-import java.util.List;
+import org.lwjgl.opengl.GL32;
 
+/**
+ * Draws one chunk section from its slice of the shared VertexArena.
+ */
 public class ChunkRenderer {
-    private int vaoId;
-    private int vboId;
-    private int eboId;
+    // Block coordinates the packed vertex positions are relative to
+    private final Vector3i origin;
+    // World-space box around everything this renderer can draw
+    private final Vector3f boundsMin;
+    private final Vector3f boundsMax;
+    private final VertexArena arena;
+    private VertexArena.Allocation allocation;
     private int vertexCount;
+    // Latest mesh requested for this chunk and latest one actually uploaded
+    private int revision;
+    private int uploadedRevision;
+    // Meshing failures since the last mesh that was uploaded
+    private int failedMeshes;
+    // Face pairs that see each other through the section, see game.world.SectionConnectivity.
+    // All of them until the first mesh arrives.
+    private long connectivity = -1L;
+
+    /**
+     * Creates a renderer for a cube of size blocks whose lowest block is at origin.
+     */
+    public ChunkRenderer(Vector3i origin, int size, VertexArena arena) {
+        this.origin = origin;
+        this.arena = arena;
+        // Blocks are centered on their coordinates
+        this.boundsMin = new Vector3f(origin.x - 0.5f, origin.y - 0.5f, origin.z - 0.5f);
+        this.boundsMax = new Vector3f(boundsMin).add(size, size, size);
+    }
 
-    public void init(Chunk chunk) {
-        // Create mesh from chunk data
-        List<Float> meshData = chunk.generateMesh();
-        
-        // Create VAO
-        vaoId = GL30.glGenVertexArrays();
-        GL30.glBindVertexArray(vaoId);
-
-        // Create VBO
-        vboId = GL15.glGenBuffers();
-        FloatBuffer verticesBuffer = null;
-        try {
-            verticesBuffer = MemoryUtil.memAllocFloat(meshData.size());
-            for (float f : meshData) {
-                verticesBuffer.put(f);
-            }
-            verticesBuffer.flip();
-            vertexCount = (meshData.size() / 5) * 6 / 4; // Convert quads to triangles
-
-            GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vboId);
-            GL15.glBufferData(GL15.GL_ARRAY_BUFFER, verticesBuffer, GL15.GL_STATIC_DRAW);
-
-            // Position attribute
-            GL20.glVertexAttribPointer(0, 3, GL11.GL_FLOAT, false, 20, 0);
-            GL20.glEnableVertexAttribArray(0);
-
-            // Texture coordinate attribute
-            GL20.glVertexAttribPointer(1, 2, GL11.GL_FLOAT, false, 20, 12);
-            GL20.glEnableVertexAttribArray(1);
-
-            // Create indices for converting quads to triangles
-            int numQuads = meshData.size() / 20; // 20 floats per quad (5 per vertex * 4 vertices)
-            IntBuffer indicesBuffer = MemoryUtil.memAllocInt(numQuads * 6);
-            for (int i = 0; i < numQuads; i++) {
-                int baseVertex = i * 4;
-                indicesBuffer.put(baseVertex);
-                indicesBuffer.put(baseVertex + 1);
-                indicesBuffer.put(baseVertex + 2);
-                indicesBuffer.put(baseVertex + 2);
-                indicesBuffer.put(baseVertex + 3);
-                indicesBuffer.put(baseVertex);
-            }
-            indicesBuffer.flip();
-
-            // Create and bind EBO
-            eboId = GL15.glGenBuffers();
-            GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, eboId);
-            GL15.glBufferData(GL15.GL_ELEMENT_ARRAY_BUFFER, indicesBuffer, GL15.GL_STATIC_DRAW);
-            MemoryUtil.memFree(indicesBuffer);
-
-        } finally {
-            if (verticesBuffer != null) {
-                MemoryUtil.memFree(verticesBuffer);
-            }
+    public void upload(ChunkMesh mesh) {
+        if (mesh.getQuadCount() == 0) {
+            // Nothing left to draw, give the slice back
+            arena.free(allocation);
+            allocation = null;
+        } else {
+            // Rewritten in place when the new mesh fits the current slice
+            allocation = arena.upload(allocation, mesh);
         }
+        vertexCount = mesh.getIndexCount();
     }
 
-    public void render() {
-        GL30.glBindVertexArray(vaoId);
-        GL11.glDrawElements(GL11.GL_TRIANGLES, vertexCount, GL11.GL_UNSIGNED_INT, 0);
+    public int nextRevision() {
+        return ++revision;
     }
 
-    public void cleanup() {
-        GL20.glDisableVertexAttribArray(0);
-        GL20.glDisableVertexAttribArray(1);
+    /**
+     * Returns true while a requested mesh has not been uploaded yet.
+     */
+    public boolean isMeshPending() {
+        return revision > uploadedRevision;
+    }
+
+    /**
+     * Counts a failed meshing attempt and returns the number of failures in a row.
+     */
+    public int addFailedMesh() {
+        return ++failedMeshes;
+    }
+
+    public void resetFailedMeshes() {
+        failedMeshes = 0;
+    }
+
+    public int getUploadedRevision() {
+        return uploadedRevision;
+    }
+
+    public void setUploadedRevision(int uploadedRevision) {
+        this.uploadedRevision = uploadedRevision;
+    }
+
+    public long getConnectivity() {
+        return connectivity;
+    }
 
-        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
-        GL15.glDeleteBuffers(vboId);
+    public void setConnectivity(long connectivity) {
+        this.connectivity = connectivity;
+    }
+
+    public Vector3i getOrigin() {
+        return origin;
+    }
+
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    /**
+     * Offset of the section's slice in the arena, only valid while the section is not empty.
+     */
+    public int getBaseVertex() {
+        return allocation.getOffset();
+    }
 
-        GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, 0);
-        GL15.glDeleteBuffers(eboId);
+    public boolean isEmpty() {
+        return vertexCount == 0;
+    }
 
-        GL30.glBindVertexArray(0);
-        GL30.glDeleteVertexArrays(vaoId);
+    public boolean isInFrustum(FrustumIntersection frustum) {
+        return frustum.testAab(boundsMin, boundsMax);
+    }
+
+    /**
+     * Draws the section. The arena's VAO must be bound, see VertexArena.bind().
+     */
+    public void render() {
+        if (vertexCount == 0) {
+            return;
+        }
+        GL32.glDrawElementsBaseVertex(GL11.GL_TRIANGLES, vertexCount, arena.getIndexType(), 0, getBaseVertex());
+    }
+
+    public void cleanup() {
+        arena.free(allocation);
+        allocation = null;
+        vertexCount = 0;
     }
 }
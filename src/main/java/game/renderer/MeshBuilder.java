@@ -0,0 +1,93 @@
+package game.renderer;
+
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+public class MeshBuilder {
+    public static final int INTS_PER_VERTEX = 2; // See vertex() for the packing
+    public static final int BYTES_PER_VERTEX = INTS_PER_VERTEX * Integer.BYTES;
+    public static final int MAX_LIGHT = 15;
+    private static final int INITIAL_CAPACITY = 1024 * BYTES_PER_VERTEX;
+
+    // One builder per thread, reused across rebuilds so meshing does not allocate
+    private static final ThreadLocal<MeshBuilder> POOL = ThreadLocal.withInitial(MeshBuilder::new);
+
+    private ByteBuffer buffer;
+
+    public MeshBuilder() {
+        buffer = ByteBuffer.allocateDirect(INITIAL_CAPACITY).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Returns this thread's pooled builder, cleared and ready for a new mesh.
+     */
+    public static MeshBuilder get() {
+        MeshBuilder builder = POOL.get();
+        builder.reset();
+        return builder;
+    }
+
+    public void reset() {
+        buffer.clear();
+    }
+
+    /**
+     * Adds a vertex packed into two ints, decoded by chunk.vert. The first holds the corner x, y and z
+     * within the section (0-16, 5 bits each), the face (3 bits) and the light level (0-15, 4 bits);
+     * the second holds u and v in blocks (0-16, 5 bits each) and the atlas tile (8 bits).
+     */
+    public void vertex(int x, int y, int z, int face, int light, int u, int v, int tile) {
+        ensureCapacity(BYTES_PER_VERTEX);
+        buffer.putInt(x | y << 5 | z << 10 | face << 15 | light << 18);
+        buffer.putInt(u | v << 5 | tile << 10);
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        int newCapacity = Math.max(buffer.capacity() * 2, buffer.position() + bytes);
+        ByteBuffer grown = ByteBuffer.allocateDirect(newCapacity).order(ByteOrder.nativeOrder());
+        buffer.flip();
+        grown.put(buffer);
+        buffer = grown;
+    }
+
+    public int getVertexCount() {
+        return buffer.position() / BYTES_PER_VERTEX;
+    }
+
+    public int getQuadCount() {
+        return getVertexCount() / 4;
+    }
+
+    public boolean isEmpty() {
+        return buffer.position() == 0;
+    }
+
+    /**
+     * Returns a view of the vertices written so far, ready to be passed to glBufferData.
+     * The view is only valid until the builder is reset or written to again.
+     */
+    public ByteBuffer getBuffer() {
+        ByteBuffer view = buffer.duplicate().order(ByteOrder.nativeOrder());
+        view.flip();
+        return view;
+    }
+
+    /**
+     * Copies the vertices into an exact-size buffer, so the result can outlive this builder and be
+     * uploaded from another thread. The copy is native memory the GC does not track, the mesh must
+     * be freed once it has been uploaded or dropped, see ChunkMesh.free().
+     */
+    public ChunkMesh build() {
+        if (isEmpty()) {
+            return new ChunkMesh(null, 0);
+        }
+        ByteBuffer vertices = MemoryUtil.memAlloc(buffer.position());
+        vertices.put(getBuffer()).flip();
+        return new ChunkMesh(vertices, getQuadCount());
+    }
+}
@@ -0,0 +1,92 @@
+package game.renderer;
+
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * One element buffer holding the 0, 1, 2, 2, 3, 0 pattern of every quad, shared by all chunk
+ * VAOs. It grows on demand and uses 16-bit indices while every vertex it can address fits in
+ * them. A section mesh never needs more than 16^3 * 3 quads, so in practice it stays 16-bit.
+ */
+public class QuadIndexBuffer {
+    private static final int MAX_SHORT_VERTICES = 1 << 16;
+    private static final int INITIAL_QUADS = 1024;
+
+    private int eboId;
+    private int quadCapacity;
+    private int indexType = GL11.GL_UNSIGNED_SHORT;
+
+    /**
+     * Makes sure the buffer covers at least the given number of quads. The buffer object stays the
+     * same when it grows, so VAOs that reference it need no update.
+     */
+    public void ensureCapacity(int quads) {
+        if (quads <= quadCapacity) {
+            return;
+        }
+        int capacity = Math.max(INITIAL_QUADS, quadCapacity);
+        while (capacity < quads) {
+            capacity *= 2;
+        }
+        boolean shortIndices = capacity * 4 <= MAX_SHORT_VERTICES;
+        int indexBytes = shortIndices ? Short.BYTES : Integer.BYTES;
+
+        ByteBuffer indices = ByteBuffer.allocateDirect(capacity * 6 * indexBytes).order(ByteOrder.nativeOrder());
+        for (int i = 0; i < capacity; i++) {
+            int baseVertex = i * 4;
+            put(indices, baseVertex, shortIndices);
+            put(indices, baseVertex + 1, shortIndices);
+            put(indices, baseVertex + 2, shortIndices);
+            put(indices, baseVertex + 2, shortIndices);
+            put(indices, baseVertex + 3, shortIndices);
+            put(indices, baseVertex, shortIndices);
+        }
+        indices.flip();
+
+        if (eboId == 0) {
+            eboId = GL15.glGenBuffers();
+        }
+        // Leave the element binding of whatever VAO is bound alone
+        int previous = GL11.glGetInteger(GL15.GL_ELEMENT_ARRAY_BUFFER_BINDING);
+        GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, eboId);
+        GL15.glBufferData(GL15.GL_ELEMENT_ARRAY_BUFFER, indices, GL15.GL_STATIC_DRAW);
+        GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, previous);
+
+        quadCapacity = capacity;
+        indexType = shortIndices ? GL11.GL_UNSIGNED_SHORT : GL11.GL_UNSIGNED_INT;
+    }
+
+    private static void put(ByteBuffer indices, int index, boolean shortIndices) {
+        if (shortIndices) {
+            indices.putShort((short) index);
+        } else {
+            indices.putInt(index);
+        }
+    }
+
+    /**
+     * Binds the buffer as the element buffer of the currently bound VAO.
+     */
+    public void bind() {
+        ensureCapacity(INITIAL_QUADS);
+        GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, eboId);
+    }
+
+    /**
+     * GL_UNSIGNED_SHORT or GL_UNSIGNED_INT, for glDrawElements.
+     */
+    public int getIndexType() {
+        return indexType;
+    }
+
+    public void cleanup() {
+        if (eboId != 0) {
+            GL15.glDeleteBuffers(eboId);
+            eboId = 0;
+            quadCapacity = 0;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package game.renderer;
 
 import org.joml.Matrix4f;
+import org.joml.Vector4f;
+import org.lwjgl.opengl.GL43;
 import org.lwjgl.opengl.GL20;
 import org.lwjgl.system.MemoryStack;
 
@@ -14,6 +16,7 @@ public class Shader {
     private final int programId;
     private int vertexShaderId;
     private int fragmentShaderId;
+    private int computeShaderId;
     private final Map<String, Integer> uniforms;
 
     public Shader() throws Exception {
@@ -32,6 +35,10 @@ public class Shader {
         fragmentShaderId = createShader(shaderCode, GL_FRAGMENT_SHADER);
     }
 
+    public void createComputeShader(String shaderCode) throws Exception {
+        computeShaderId = createShader(shaderCode, GL43.GL_COMPUTE_SHADER);
+    }
+
     protected int createShader(String shaderCode, int shaderType) throws Exception {
         int shaderId = glCreateShader(shaderType);
         if (shaderId == 0) {
@@ -62,6 +69,9 @@ public class Shader {
         if (fragmentShaderId != 0) {
             glDetachShader(programId, fragmentShaderId);
         }
+        if (computeShaderId != 0) {
+            glDetachShader(programId, computeShaderId);
+        }
 
         glValidateProgram(programId);
         if (glGetProgrami(programId, GL_VALIDATE_STATUS) == 0) {
@@ -112,6 +122,13 @@ public class Shader {
         }
     }
 
+    public void setUniform(String uniformName, float x, float y, float z) {
+        Integer location = uniforms.get(uniformName);
+        if (location != null) {
+            glUniform3f(location, x, y, z);
+        }
+    }
+
     public void setUniform(String uniformName, float x, float y, float z, float w) {
         Integer location = uniforms.get(uniformName);
         if (location != null) {
@@ -119,6 +136,20 @@ public class Shader {
         }
     }
 
+    public void setUniform(String uniformName, Vector4f[] values) {
+        Integer location = uniforms.get(uniformName);
+        if (location != null) {
+            try (MemoryStack stack = MemoryStack.stackPush()) {
+                FloatBuffer fb = stack.mallocFloat(values.length * 4);
+                for (Vector4f value : values) {
+                    fb.put(value.x).put(value.y).put(value.z).put(value.w);
+                }
+                fb.flip();
+                glUniform4fv(location, fb);
+            }
+        }
+    }
+
     public void bind() {
         glUseProgram(programId);
     }
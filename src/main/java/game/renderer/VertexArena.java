@@ -0,0 +1,240 @@
+package game.renderer;
+
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL31;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * One large vertex buffer that every chunk mesh gets a slice of, drawn through a single VAO.
+ *
+ * Slices are handed out best-fit from a free list and rounded up to GRANULE_VERTICES, so a mesh
+ * that grows a little after an edit is usually rewritten in place with glBufferSubData. Freed
+ * slices merge with free neighbors. When no free slice is large enough the live slices are copied
+ * packed into a new buffer, which both defragments and, if needed, grows the arena.
+ */
+public class VertexArena {
+    private static final int INITIAL_VERTICES = 1 << 20;
+    private static final int GRANULE_VERTICES = 64;
+
+    private final QuadIndexBuffer quadIndices = new QuadIndexBuffer();
+    // Free slices by vertex offset, mapped to their length in vertices
+    private final TreeMap<Integer, Integer> freeSlices = new TreeMap<>();
+    private final Set<Allocation> allocations = new HashSet<>();
+    private int vaoId;
+    private int vboId;
+    private int capacity;
+    private int usedVertices;
+
+    /**
+     * Writes the vertices into the given slice if they fit, otherwise frees it and returns a new one.
+     * Pass null for a mesh that has no slice yet.
+     */
+    public Allocation upload(Allocation allocation, ChunkMesh mesh) {
+        if (vaoId == 0) {
+            createBuffers(INITIAL_VERTICES);
+        }
+        ByteBuffer vertices = mesh.getVertices();
+        int vertexCount = vertices.remaining() / MeshBuilder.BYTES_PER_VERTEX;
+        quadIndices.ensureCapacity(mesh.getQuadCount());
+
+        if (allocation == null || vertexCount > allocation.length) {
+            free(allocation);
+            allocation = allocate(roundUp(vertexCount));
+        }
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vboId);
+        GL15.glBufferSubData(GL15.GL_ARRAY_BUFFER, (long) allocation.offset * MeshBuilder.BYTES_PER_VERTEX, vertices);
+        return allocation;
+    }
+
+    public void free(Allocation allocation) {
+        if (allocation == null || !allocations.remove(allocation)) {
+            return;
+        }
+        usedVertices -= allocation.length;
+        int offset = allocation.offset;
+        int length = allocation.length;
+
+        // Merge with the free slices on either side
+        Map.Entry<Integer, Integer> before = freeSlices.floorEntry(offset);
+        if (before != null && before.getKey() + before.getValue() == offset) {
+            offset = before.getKey();
+            length += before.getValue();
+            freeSlices.remove(before.getKey());
+        }
+        Integer afterLength = freeSlices.remove(offset + length);
+        if (afterLength != null) {
+            length += afterLength;
+        }
+        freeSlices.put(offset, length);
+    }
+
+    private Allocation allocate(int length) {
+        Map.Entry<Integer, Integer> best = findFreeSlice(length);
+        if (best == null) {
+            // Fragmented or full, repack and grow if the live slices leave too little room
+            int required = usedVertices + length;
+            int newCapacity = capacity;
+            while (newCapacity < required) {
+                newCapacity *= 2;
+            }
+            relocate(newCapacity);
+            best = findFreeSlice(length);
+        }
+
+        int offset = best.getKey();
+        int remaining = best.getValue() - length;
+        freeSlices.remove(offset);
+        if (remaining > 0) {
+            freeSlices.put(offset + length, remaining);
+        }
+        Allocation allocation = new Allocation(offset, length);
+        allocations.add(allocation);
+        usedVertices += length;
+        return allocation;
+    }
+
+    // Smallest free slice that holds the given number of vertices, or null
+    private Map.Entry<Integer, Integer> findFreeSlice(int length) {
+        Map.Entry<Integer, Integer> best = null;
+        for (Map.Entry<Integer, Integer> slice : freeSlices.entrySet()) {
+            if (slice.getValue() >= length && (best == null || slice.getValue() < best.getValue())) {
+                best = slice;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Copies every live slice, packed in offset order, into a new buffer of the given capacity and
+     * updates their offsets. Leaves a single free slice at the end.
+     */
+    private void relocate(int newCapacity) {
+        int oldVbo = vboId;
+        vboId = GL15.glGenBuffers();
+        GL15.glBindBuffer(GL31.GL_COPY_WRITE_BUFFER, vboId);
+        GL15.glBufferData(GL31.GL_COPY_WRITE_BUFFER, (long) newCapacity * MeshBuilder.BYTES_PER_VERTEX, GL15.GL_DYNAMIC_DRAW);
+        GL15.glBindBuffer(GL31.GL_COPY_READ_BUFFER, oldVbo);
+
+        List<Allocation> live = new ArrayList<>(allocations);
+        live.sort(Comparator.comparingInt(allocation -> allocation.offset));
+        int next = 0;
+        for (Allocation allocation : live) {
+            GL31.glCopyBufferSubData(GL31.GL_COPY_READ_BUFFER, GL31.GL_COPY_WRITE_BUFFER,
+                (long) allocation.offset * MeshBuilder.BYTES_PER_VERTEX,
+                (long) next * MeshBuilder.BYTES_PER_VERTEX,
+                (long) allocation.length * MeshBuilder.BYTES_PER_VERTEX);
+            allocation.offset = next;
+            next += allocation.length;
+        }
+        GL15.glDeleteBuffers(oldVbo);
+
+        capacity = newCapacity;
+        freeSlices.clear();
+        if (next < capacity) {
+            freeSlices.put(next, capacity - next);
+        }
+
+        // The VAO holds on to the buffer the attribute was set up with
+        GL30.glBindVertexArray(vaoId);
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vboId);
+        setVertexFormat();
+        GL30.glBindVertexArray(0);
+    }
+
+    private void createBuffers(int vertices) {
+        vaoId = GL30.glGenVertexArrays();
+        GL30.glBindVertexArray(vaoId);
+
+        vboId = GL15.glGenBuffers();
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vboId);
+        GL15.glBufferData(GL15.GL_ARRAY_BUFFER, (long) vertices * MeshBuilder.BYTES_PER_VERTEX, GL15.GL_DYNAMIC_DRAW);
+        setVertexFormat();
+
+        // Indices come from the buffer shared by every slice, offset per draw by the base vertex
+        quadIndices.bind();
+
+        GL30.glBindVertexArray(0);
+        capacity = vertices;
+        freeSlices.put(0, vertices);
+    }
+
+    private static void setVertexFormat() {
+        // Packed vertex attribute, two unsigned ints read as integers and decoded in chunk.vert
+        GL30.glVertexAttribIPointer(0, MeshBuilder.INTS_PER_VERTEX, GL11.GL_UNSIGNED_INT, MeshBuilder.BYTES_PER_VERTEX, 0);
+        GL20.glEnableVertexAttribArray(0);
+    }
+
+    private static int roundUp(int vertices) {
+        return Math.max(GRANULE_VERTICES, (vertices + GRANULE_VERTICES - 1) / GRANULE_VERTICES * GRANULE_VERTICES);
+    }
+
+    /**
+     * Binds the VAO every slice is drawn through.
+     */
+    public void bind() {
+        GL30.glBindVertexArray(vaoId);
+    }
+
+    /**
+     * GL_UNSIGNED_SHORT or GL_UNSIGNED_INT, for drawing slices.
+     */
+    public int getIndexType() {
+        return quadIndices.getIndexType();
+    }
+
+    public long getUsedBytes() {
+        return (long) usedVertices * MeshBuilder.BYTES_PER_VERTEX;
+    }
+
+    public long getCapacityBytes() {
+        return (long) capacity * MeshBuilder.BYTES_PER_VERTEX;
+    }
+
+    public void cleanup() {
+        if (vaoId == 0) {
+            return;
+        }
+        GL30.glBindVertexArray(0);
+        GL15.glDeleteBuffers(vboId);
+        GL30.glDeleteVertexArrays(vaoId);
+        quadIndices.cleanup();
+        vaoId = 0;
+        vboId = 0;
+        capacity = 0;
+        usedVertices = 0;
+        freeSlices.clear();
+        allocations.clear();
+    }
+
+    /**
+     * A slice of the arena. The offset changes when the arena is defragmented, so read it at draw time.
+     */
+    public static class Allocation {
+        private int offset;
+        private final int length;
+
+        private Allocation(int offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+
+        public int getOffset() {
+            return offset;
+        }
+
+        public int getLength() {
+            return length;
+        }
+    }
+}
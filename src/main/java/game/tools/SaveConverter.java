@@ -0,0 +1,53 @@
+package game.tools;
+
+import game.world.WorldSaveManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Migrates per-chunk files (legacy JSON or binary) into region files.
+ * Usage: SaveConverter [worldName...] (defaults to world1, read from the saves directory, see
+ * WorldSaveManager for -DsaveDir).
+ */
+public class SaveConverter {
+    public static void main(String[] args) throws IOException {
+        String[] worlds = args.length > 0 ? args : new String[] {"world1"};
+        for (String worldName : worlds) {
+            WorldSaveManager saveManager = new WorldSaveManager(worldName);
+
+            List<Path> legacyChunks = saveManager.listLegacyChunks();
+            long bytesBefore = 0;
+            long start = System.nanoTime();
+            for (Path path : legacyChunks) {
+                bytesBefore += Files.size(path);
+                saveManager.readLegacyChunk(path);
+            }
+            long loadBefore = System.nanoTime() - start;
+
+            int converted = saveManager.convertLegacyChunks();
+
+            start = System.nanoTime();
+            int loaded = saveManager.readAllChunks().size();
+            long loadAfter = System.nanoTime() - start;
+            long bytesAfter = directorySize(saveManager.getSavePath().resolve("region"));
+            saveManager.close();
+
+            System.out.printf("%s: converted %d chunks into region files (%d stored), %d files / %d bytes -> %d bytes, load %.2f -> %.2f ms%n",
+                worldName, converted, loaded, legacyChunks.size(), bytesBefore, bytesAfter, loadBefore / 1e6, loadAfter / 1e6);
+        }
+    }
+
+    private static long directorySize(Path directory) throws IOException {
+        long total = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path : (Iterable<Path>) files::iterator) {
+                total += Files.size(path);
+            }
+        }
+        return total;
+    }
+}
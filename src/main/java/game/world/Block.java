@@ -5,6 +5,10 @@ public class Block {
     public static final byte GRASS = 1;
     public static final byte DIRT = 2;
     public static final byte STONE = 3;
+    public static final byte COAL_ORE = 4;
+    public static final byte IRON_ORE = 5;
+
+    public static final int ATLAS_SIZE = 16; // Texture atlas is 16x16 tiles
 
     private static final float[] VERTICES = {
         // Front face
@@ -61,13 +65,21 @@ public class Block {
         return INDICES;
     }
 
+    /**
+     * Returns the block coordinate containing the given world coordinate. Blocks are centered on
+     * their integer coordinates, block b spans b - 0.5 to b + 0.5.
+     */
+    public static int toBlockCoordinate(float coordinate) {
+        return (int) Math.floor(coordinate + 0.5f);
+    }
+
     public static boolean isTransparent(byte blockType) {
         return blockType == AIR;
     }
 
-    public static float[] getTextureCoords(byte blockType, int face) {
-        float textureX = 0;
-        float textureY = 0;
+    public static int getTextureIndex(byte blockType, int face) {
+        int textureX = 0;
+        int textureY = 0;
 
         switch (blockType) {
             case GRASS:
@@ -90,15 +102,16 @@ public class Block {
                 textureX = 3;
                 textureY = 0;
                 break;
+            case COAL_ORE:
+                textureX = 4;
+                textureY = 0;
+                break;
+            case IRON_ORE:
+                textureX = 5;
+                textureY = 0;
+                break;
         }
 
-        float unit = 1.0f / 16.0f; // Assuming texture atlas is 16x16
-        float[] coords = new float[] {
-            textureX * unit, textureY * unit,
-            (textureX + 1) * unit, textureY * unit,
-            (textureX + 1) * unit, (textureY + 1) * unit,
-            textureX * unit, (textureY + 1) * unit
-        };
-        return coords;
+        return textureY * ATLAS_SIZE + textureX;
     }
 }
@@ -0,0 +1,41 @@
+package game.world;
+
+/**
+ * Reads blocks from a world, remembering the chunk of the last lookup so runs of lookups inside one
+ * chunk skip the chunk map. Each thread reading blocks needs its own cursor. Cursors may read in
+ * parallel as long as the world is not changed meanwhile.
+ */
+public class BlockCursor {
+    private static final int CHUNK_SHIFT = Integer.numberOfTrailingZeros(Chunk.SIZE);
+    private static final int LOCAL_MASK = Chunk.SIZE - 1;
+
+    private final World world;
+    private Chunk chunk;
+    // World.getChunkGeneration() when chunk was looked up, a change means it may be unloaded
+    private int generation;
+
+    public BlockCursor(World world) {
+        this.world = world;
+    }
+
+    /**
+     * Returns the block at world block coordinates, air where no chunk is loaded.
+     */
+    public byte getBlock(int x, int y, int z) {
+        // Chunk.SIZE is a power of two, so shifts and masks floor correctly for negative coordinates
+        int chunkX = x >> CHUNK_SHIFT;
+        int chunkZ = z >> CHUNK_SHIFT;
+
+        Chunk cached = chunk;
+        if (cached == null || cached.getX() != chunkX || cached.getZ() != chunkZ
+                || generation != world.getChunkGeneration()) {
+            cached = world.getChunk(chunkX, chunkZ);
+            if (cached == null) {
+                return Block.AIR;
+            }
+            chunk = cached;
+            generation = world.getChunkGeneration();
+        }
+        return cached.getBlock(x & LOCAL_MASK, y, z & LOCAL_MASK);
+    }
+}
@@ -0,0 +1,200 @@
+package game.world;
+
+import java.util.Arrays;
+
+/**
+ * Flat block storage for one 16x16x16 volume, indexed by index(x, y, z).
+ *
+ * A volume holding a single block type stores just that value. Up to 16 distinct types are stored
+ * as palette indices bit-packed into longs (1, 2 or 4 bits each, never straddling a long), and
+ * anything with more types falls back to one byte per block.
+ */
+public class BlockStorage {
+    public static final int SIZE = Chunk.SIZE;
+    public static final int VOLUME = SIZE * SIZE * SIZE;
+    private static final int MAX_PALETTE_BITS = 4;
+
+    // Single-value mode when both palette and full are null
+    private byte value;
+    private byte[] palette;
+    private int paletteSize;
+    private int bits;
+    // log2 of the entries per long, so lookups shift instead of divide
+    private int entriesShift;
+    private long[] packed;
+    private byte[] full;
+
+    public BlockStorage(byte value) {
+        this.value = value;
+    }
+
+    /**
+     * Creates storage in the most compact mode for the given blocks, laid out by index(x, y, z).
+     */
+    public static BlockStorage of(byte[] blocks) {
+        BlockStorage storage = new BlockStorage(blocks[0]);
+        boolean[] seen = new boolean[256];
+        int distinct = 0;
+        for (byte block : blocks) {
+            if (!seen[block & 0xFF]) {
+                seen[block & 0xFF] = true;
+                distinct++;
+            }
+        }
+
+        if (distinct > 1 << MAX_PALETTE_BITS) {
+            storage.full = blocks.clone();
+        } else if (distinct > 1) {
+            storage.initPalette(bitsFor(distinct));
+            for (int i = 0; i < VOLUME; i++) {
+                storage.set(i, blocks[i]);
+            }
+        }
+        return storage;
+    }
+
+    public static int index(int x, int y, int z) {
+        return (y * SIZE + z) * SIZE + x;
+    }
+
+    public byte get(int index) {
+        if (full != null) {
+            return full[index];
+        }
+        if (palette != null) {
+            return palette[paletteIndex(index)];
+        }
+        return value;
+    }
+
+    public void set(int index, byte block) {
+        if (full != null) {
+            full[index] = block;
+            return;
+        }
+        if (palette == null) {
+            if (block == value) {
+                return;
+            }
+            // Leave single-value mode, every block currently has palette index 0
+            initPalette(1);
+        }
+
+        int entry = findOrAdd(block);
+        if (entry < 0) {
+            toFull();
+            full[index] = block;
+            return;
+        }
+        setPaletteIndex(index, entry);
+    }
+
+    /**
+     * Copies every block into dest, laid out by index(x, y, z).
+     */
+    public void copyTo(byte[] dest) {
+        if (full != null) {
+            System.arraycopy(full, 0, dest, 0, VOLUME);
+        } else if (palette != null) {
+            for (int i = 0; i < VOLUME; i++) {
+                dest[i] = palette[paletteIndex(i)];
+            }
+        } else {
+            Arrays.fill(dest, 0, VOLUME, value);
+        }
+    }
+
+    /**
+     * Returns true if every block is the same, see getUniformValue.
+     */
+    public boolean isUniform() {
+        return palette == null && full == null;
+    }
+
+    public byte getUniformValue() {
+        return value;
+    }
+
+    /**
+     * Approximate heap bytes used by the block data, for comparing storage modes.
+     */
+    public int getDataBytes() {
+        if (full != null) {
+            return full.length;
+        }
+        if (palette != null) {
+            return palette.length + packed.length * Long.BYTES;
+        }
+        return 0;
+    }
+
+    private void initPalette(int bits) {
+        setBits(bits);
+        this.palette = new byte[1 << MAX_PALETTE_BITS];
+        this.palette[0] = value;
+        this.paletteSize = 1;
+        this.packed = new long[VOLUME * bits / 64];
+    }
+
+    private void setBits(int bits) {
+        this.bits = bits;
+        this.entriesShift = 6 - Integer.numberOfTrailingZeros(bits);
+    }
+
+    private int findOrAdd(byte block) {
+        for (int i = 0; i < paletteSize; i++) {
+            if (palette[i] == block) {
+                return i;
+            }
+        }
+        if (paletteSize == 1 << bits) {
+            if (bits == MAX_PALETTE_BITS) {
+                return -1;
+            }
+            repack(bits * 2);
+        }
+        palette[paletteSize] = block;
+        return paletteSize++;
+    }
+
+    private int paletteIndex(int index) {
+        int shift = (index & ((1 << entriesShift) - 1)) * bits;
+        return (int) (packed[index >>> entriesShift] >>> shift) & ((1 << bits) - 1);
+    }
+
+    private void setPaletteIndex(int index, int entry) {
+        int shift = (index & ((1 << entriesShift) - 1)) * bits;
+        long mask = ((1L << bits) - 1) << shift;
+        int word = index >>> entriesShift;
+        packed[word] = (packed[word] & ~mask) | ((long) entry << shift);
+    }
+
+    private void repack(int newBits) {
+        int[] entries = new int[VOLUME];
+        for (int i = 0; i < VOLUME; i++) {
+            entries[i] = paletteIndex(i);
+        }
+        setBits(newBits);
+        packed = new long[VOLUME * bits / 64];
+        for (int i = 0; i < VOLUME; i++) {
+            setPaletteIndex(i, entries[i]);
+        }
+    }
+
+    private void toFull() {
+        byte[] blocks = new byte[VOLUME];
+        copyTo(blocks);
+        full = blocks;
+        palette = null;
+        packed = null;
+    }
+
+    private static int bitsFor(int distinct) {
+        if (distinct <= 2) {
+            return 1;
+        } else if (distinct <= 4) {
+            return 2;
+        }
+        return 4;
+    }
+}
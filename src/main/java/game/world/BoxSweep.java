@@ -0,0 +1,90 @@
+package game.world;
+
+/**
+ * Moves axis-aligned boxes through the block grid without passing through solid blocks.
+ *
+ * A box is given by the center of its bottom face, its width along x and z and its height. Blocks
+ * are centered on their coordinates, block b spans b - 0.5 to b + 0.5.
+ */
+public final class BoxSweep {
+    // Distance kept between a box and the blocks it collides with
+    public static final float CONTACT_GAP = 0.001f;
+
+    private BoxSweep() {
+    }
+
+    /**
+     * Returns how far the box can move by distance along axis (0 = x, 1 = y, 2 = z) before touching
+     * a solid block, which is distance itself if nothing is in the way. Only the blocks in the swept
+     * volume are tested, nearest layer first, so no speed can carry the box through a block. Blocks
+     * the box already overlaps are ignored, letting a stuck box move out.
+     */
+    public static float sweep(BlockCursor blocks, float x, float y, float z, float width, float height,
+                              int axis, float distance) {
+        if (distance == 0) {
+            return 0;
+        }
+        float min = lowerBound(axis, x, y, z, width);
+        float max = min + extent(axis, width, height);
+        // The two axes across the movement, as in ChunkMesher
+        int uAxis = (axis + 1) % 3;
+        int vAxis = (axis + 2) % 3;
+        float minU = lowerBound(uAxis, x, y, z, width);
+        float minV = lowerBound(vAxis, x, y, z, width);
+        int firstU = firstOverlapping(minU);
+        int lastU = lastOverlapping(minU + extent(uAxis, width, height));
+        int firstV = firstOverlapping(minV);
+        int lastV = lastOverlapping(minV + extent(vAxis, width, height));
+
+        int step = distance > 0 ? 1 : -1;
+        float leading = distance > 0 ? max : min;
+        int first = distance > 0
+            ? (int) Math.ceil(leading + 0.5f - CONTACT_GAP)
+            : (int) Math.floor(leading - 0.5f + CONTACT_GAP);
+        int last = distance > 0
+            ? (int) Math.ceil(leading + distance + 0.5f) - 1
+            : (int) Math.floor(leading + distance - 0.5f) + 1;
+
+        for (int layer = first; layer * step <= last * step; layer += step) {
+            if (isLayerSolid(blocks, axis, layer, uAxis, firstU, lastU, firstV, lastV)) {
+                // Stop just short of the face so the next sweep does not start inside the block
+                float contact = layer - 0.5f * step - leading;
+                return step > 0 ? Math.max(0, contact - CONTACT_GAP) : Math.min(0, contact + CONTACT_GAP);
+            }
+        }
+        return distance;
+    }
+
+    private static boolean isLayerSolid(BlockCursor blocks, int axis, int layer, int uAxis,
+                                        int firstU, int lastU, int firstV, int lastV) {
+        for (int v = firstV; v <= lastV; v++) {
+            for (int u = firstU; u <= lastU; u++) {
+                int bx = axis == 0 ? layer : uAxis == 0 ? u : v;
+                int by = axis == 1 ? layer : uAxis == 1 ? u : v;
+                int bz = axis == 2 ? layer : uAxis == 2 ? u : v;
+                if (!Block.isTransparent(blocks.getBlock(bx, by, bz))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static float lowerBound(int axis, float x, float y, float z, float width) {
+        return axis == 0 ? x - width / 2 : axis == 1 ? y : z - width / 2;
+    }
+
+    private static float extent(int axis, float width, float height) {
+        return axis == 1 ? height : width;
+    }
+
+    // First and last block overlapping a box edge by more than half the contact gap, so a box
+    // resting against a wall does not count the wall as overlapping
+    private static int firstOverlapping(float min) {
+        return (int) Math.floor(min - 0.5f + CONTACT_GAP / 2) + 1;
+    }
+
+    private static int lastOverlapping(float max) {
+        return (int) Math.ceil(max + 0.5f - CONTACT_GAP / 2) - 1;
+    }
+}
@@ -1,123 +1,85 @@
 package game.world;
 
-import java.util.ArrayList;
-import java.util.List;
-
+/**
+ * A column of SIZE x HEIGHT x SIZE blocks, split vertically into sections of SIZE blocks.
+ */
 public class Chunk {
     public static final int SIZE = 16;
-    private byte[][][] blocks;
+    // Column height, rounded down to whole sections; -DworldHeight=<blocks> to change it. Capped so
+    // section indices fit the unsigned shorts ChunkCodec stores them in.
+    public static final int MAX_SECTIONS = 0xFFFF;
+    public static final int SECTIONS = Math.max(1, Math.min(MAX_SECTIONS, Integer.getInteger("worldHeight", 256) / SIZE));
+    public static final int HEIGHT = SECTIONS * SIZE;
+
+    private ChunkSection[] sections; // Null for sections holding only air
     private int x, z; // Chunk coordinates
-    private boolean isDirty; // Whether the chunk needs to be re-rendered
+    private boolean isDirty; // Whether any section needs to be re-rendered
+    private boolean isModified; // Whether the chunk changed since it was last saved
+    private int lodLevel = -1; // Level of detail the column is meshed at, -1 until World picks one
     
+    /**
+     * Creates an empty column that has never been saved, for a TerrainGenerator to fill.
+     */
     public Chunk(int x, int z) {
         this.x = x;
         this.z = z;
-        this.blocks = new byte[SIZE][SIZE][SIZE];
+        this.sections = new ChunkSection[SECTIONS];
         this.isDirty = true;
-        generateTerrain();
+        this.isModified = true; // Freshly generated, never saved
     }
     
-    private void generateTerrain() {
-        // Simple flat terrain generation
-        for (int x = 0; x < SIZE; x++) {
-            for (int z = 0; z < SIZE; z++) {
-                int height = 4; // Lower terrain height
-                
-                for (int y = 0; y < SIZE; y++) {
-                    if (y > height) {
-                        blocks[x][y][z] = Block.AIR;
-                    } else if (y == height) {
-                        blocks[x][y][z] = Block.GRASS;
-                    } else if (y > height - 4) {
-                        blocks[x][y][z] = Block.DIRT;
-                    } else {
-                        blocks[x][y][z] = Block.STONE;
-                    }
-                }
-            }
-        }
+    public Chunk(int x, int z, ChunkSection[] sections) {
+        this.x = x;
+        this.z = z;
+        this.sections = sections;
+        this.isDirty = true;
     }
     
     public byte getBlock(int x, int y, int z) {
-        if (x < 0 || x >= SIZE || y < 0 || y >= SIZE || z < 0 || z >= SIZE) {
+        if (x < 0 || x >= SIZE || y < 0 || y >= HEIGHT || z < 0 || z >= SIZE) {
             return Block.AIR;
         }
-        return blocks[x][y][z];
+        ChunkSection section = sections[y >> 4];
+        return section != null ? section.getBlock(x, y & 15, z) : Block.AIR;
     }
     
     public void setBlock(int x, int y, int z, byte blockType) {
-        if (x < 0 || x >= SIZE || y < 0 || y >= SIZE || z < 0 || z >= SIZE) {
+        if (x < 0 || x >= SIZE || y < 0 || y >= HEIGHT || z < 0 || z >= SIZE) {
             return;
         }
-        blocks[x][y][z] = blockType;
+        ChunkSection section = sections[y >> 4];
+        if (section == null) {
+            if (blockType == Block.AIR) {
+                return;
+            }
+            section = new ChunkSection(new BlockStorage(Block.AIR));
+            sections[y >> 4] = section;
+        }
+        // Only the edited section is re-meshed
+        section.setBlock(x, y & 15, z, blockType);
         isDirty = true;
+        isModified = true;
     }
     
-    public List<Float> generateMesh() {
-        List<Float> meshData = new ArrayList<>();
-        
-        for (int x = 0; x < SIZE; x++) {
-            for (int y = 0; y < SIZE; y++) {
-                for (int z = 0; z < SIZE; z++) {
-                    byte blockType = blocks[x][y][z];
-                    if (blockType == Block.AIR) continue;
-                    
-                    // Check each face
-                    // Only add face if adjacent block is transparent
-                    float worldX = x + this.x * SIZE;
-                    float worldY = y;
-                    float worldZ = z + this.z * SIZE;
-                    
-                    // Front face (positive Z)
-                    if (isTransparent(x, y, z + 1)) {
-                        addFaceToMesh(meshData, blockType, 0, worldX, worldY, worldZ);
-                    }
-                    // Back face (negative Z)
-                    if (isTransparent(x, y, z - 1)) {
-                        addFaceToMesh(meshData, blockType, 1, worldX, worldY, worldZ);
-                    }
-                    // Top face (positive Y)
-                    if (isTransparent(x, y + 1, z)) {
-                        addFaceToMesh(meshData, blockType, 2, worldX, worldY, worldZ);
-                    }
-                    // Bottom face (negative Y)
-                    if (isTransparent(x, y - 1, z)) {
-                        addFaceToMesh(meshData, blockType, 3, worldX, worldY, worldZ);
-                    }
-                    // Right face (positive X)
-                    if (isTransparent(x + 1, y, z)) {
-                        addFaceToMesh(meshData, blockType, 4, worldX, worldY, worldZ);
-                    }
-                    // Left face (negative X)
-                    if (isTransparent(x - 1, y, z)) {
-                        addFaceToMesh(meshData, blockType, 5, worldX, worldY, worldZ);
-                    }
-                }
-            }
+    /**
+     * Returns the section at the given section index, or null if it is empty or out of range.
+     */
+    public ChunkSection getSection(int sectionY) {
+        if (sectionY < 0 || sectionY >= SECTIONS) {
+            return null;
         }
-        
-        isDirty = false;
-        return meshData;
+        return sections[sectionY];
     }
     
-    private boolean isTransparent(int x, int y, int z) {
-        return Block.isTransparent(getBlock(x, y, z));
+    void setSection(int sectionY, ChunkSection section) {
+        sections[sectionY] = section;
     }
     
-    private void addFaceToMesh(List<Float> meshData, byte blockType, int face, float x, float y, float z) {
-        float[] vertices = Block.getVertices();
-        float[] texCoords = Block.getTextureCoords(blockType, face);
-        
-        // Add four vertices for the face
-        for (int i = 0; i < 4; i++) {
-            int baseIndex = face * 12 + i * 3;
-            // Position
-            meshData.add(vertices[baseIndex] + x);
-            meshData.add(vertices[baseIndex + 1] + y);
-            meshData.add(vertices[baseIndex + 2] + z);
-            // Texture coordinates
-            meshData.add(texCoords[i * 2]);
-            meshData.add(texCoords[i * 2 + 1]);
+    public void markSectionDirty(int sectionY) {
+        ChunkSection section = getSection(sectionY);
+        if (section != null) {
+            section.setDirty(true);
+            isDirty = true;
         }
     }
     
@@ -125,25 +87,43 @@ public class Chunk {
         return isDirty;
     }
     
-    public int getX() {
-        return x;
+    /**
+     * Marks every section as needing a new mesh, or none of them.
+     */
+    public void setDirty(boolean isDirty) {
+        this.isDirty = isDirty;
+        for (ChunkSection section : sections) {
+            if (section != null) {
+                section.setDirty(isDirty);
+            }
+        }
     }
     
-    public int getZ() {
-        return z;
+    public boolean isModified() {
+        return isModified;
     }
     
-    public byte[][][] getBlocks() {
-        return blocks;
+    public void setModified(boolean isModified) {
+        this.isModified = isModified;
     }
     
-    public void setBlocks(byte[][][] blocks) {
-        if (blocks != null && 
-            blocks.length == SIZE && 
-            blocks[0].length == SIZE && 
-            blocks[0][0].length == SIZE) {
-            this.blocks = blocks;
-            this.isDirty = true;
-        }
+    /**
+     * Returns the level of detail the column is meshed at, 0 for full resolution and n for cells of
+     * 2^n blocks, or -1 before the world has picked one.
+     */
+    public int getLodLevel() {
+        return lodLevel;
+    }
+    
+    public void setLodLevel(int lodLevel) {
+        this.lodLevel = lodLevel;
+    }
+    
+    public int getX() {
+        return x;
+    }
+    
+    public int getZ() {
+        return z;
     }
 }
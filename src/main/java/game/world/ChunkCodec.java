@@ -0,0 +1,298 @@
+package game.world;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Versioned binary chunk format.
+ *
+ * Layout: magic, version, chunk x, chunk z and the number of stored sections, then for every
+ * section that is not all air its index, flags, the optional palette and the block data. The count
+ * and indices are unsigned shorts; version 2 files store them as single bytes and version 1 files
+ * hold a single section without count or index, which loads as the bottom section.
+ * Blocks are stored in BlockStorage order (y-major) so horizontal layers form long runs. With the
+ * palette flag, block data holds palette indices instead of block ids; with the run-length flag it
+ * is a run count followed by (varint length, value) pairs, otherwise one value per block, bit-packed
+ * when a palette is present.
+ */
+public class ChunkCodec {
+    public static final int MAGIC = 0x4D434348; // "MCCH"
+    public static final byte VERSION = 3;
+
+    private static final int FLAG_PALETTE = 1;
+    private static final int FLAG_RUN_LENGTH = 2;
+
+    private static final int VOLUME = BlockStorage.VOLUME;
+    private static final int HEADER_BYTES = 4 + 1 + 4 + 4;
+    // Section index and flags, then at worst a raw block per byte
+    private static final int MAX_SECTION_BYTES = 2 + 1 + VOLUME;
+
+    public static ByteBuffer encode(Chunk chunk) {
+        ByteBuffer sections = ByteBuffer.allocate(Chunk.SECTIONS * MAX_SECTION_BYTES);
+        byte[] blocks = new byte[VOLUME];
+        int count = 0;
+        for (int sectionY = 0; sectionY < Chunk.SECTIONS; sectionY++) {
+            ChunkSection section = chunk.getSection(sectionY);
+            if (section == null || section.isEmpty()) {
+                continue;
+            }
+            section.getStorage().copyTo(blocks);
+            int start = sections.position();
+            sections.putShort((short) sectionY);
+            if (!encodeSection(sections, blocks)) {
+                // Became all air through edits, nothing worth storing
+                sections.position(start);
+                continue;
+            }
+            count++;
+        }
+        sections.flip();
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + 2 + sections.remaining());
+        buffer.putInt(MAGIC);
+        buffer.put(VERSION);
+        buffer.putInt(chunk.getX());
+        buffer.putInt(chunk.getZ());
+        buffer.putShort((short) count);
+        buffer.put(sections);
+        buffer.flip();
+        return buffer;
+    }
+
+    // Writes flags, palette and block data; returns false without writing if the blocks are all air
+    private static boolean encodeSection(ByteBuffer buffer, byte[] blocks) {
+        // Collect the palette in order of first appearance
+        byte[] palette = new byte[256];
+        int[] paletteIndex = new int[256];
+        int paletteSize = 0;
+        for (int i = 0; i < 256; i++) {
+            paletteIndex[i] = -1;
+        }
+        for (byte block : blocks) {
+            if (paletteIndex[block & 0xFF] < 0) {
+                paletteIndex[block & 0xFF] = paletteSize;
+                palette[paletteSize++] = block;
+            }
+        }
+        if (paletteSize == 1 && palette[0] == Block.AIR) {
+            return false;
+        }
+
+        int bits = bitsFor(paletteSize);
+        boolean usePalette = bits < 8;
+        int packedBytes = usePalette ? paletteSize + 1 + (VOLUME * bits + 7) / 8 : VOLUME;
+        int runLengthBytes = runLengthSize(blocks) + (usePalette ? paletteSize + 1 : 0);
+        boolean useRunLength = runLengthBytes < packedBytes;
+
+        buffer.put((byte) ((usePalette ? FLAG_PALETTE : 0) | (useRunLength ? FLAG_RUN_LENGTH : 0)));
+
+        if (usePalette) {
+            buffer.put((byte) (paletteSize - 1));
+            buffer.put(palette, 0, paletteSize);
+            for (int i = 0; i < VOLUME; i++) {
+                blocks[i] = (byte) paletteIndex[blocks[i] & 0xFF];
+            }
+        }
+
+        if (useRunLength) {
+            writeRuns(buffer, blocks);
+        } else if (usePalette) {
+            writePacked(buffer, blocks, bits);
+        } else {
+            buffer.put(blocks);
+        }
+        return true;
+    }
+
+    public static Chunk decode(ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Not a binary chunk");
+        }
+        byte version = buffer.get();
+        if (version < 1 || version > VERSION) {
+            throw new IllegalArgumentException("Unsupported chunk format version: " + version);
+        }
+        int x = buffer.getInt();
+        int z = buffer.getInt();
+
+        ChunkSection[] sections = new ChunkSection[Chunk.SECTIONS];
+        if (version == 1) {
+            sections[0] = decodeSection(buffer);
+            return new Chunk(x, z, sections);
+        }
+
+        int count = version == 2 ? buffer.get() & 0xFF : buffer.getShort() & 0xFFFF;
+        for (int i = 0; i < count; i++) {
+            int sectionY = version == 2 ? buffer.get() & 0xFF : buffer.getShort() & 0xFFFF;
+            ChunkSection section = decodeSection(buffer);
+            // Sections above a lowered world height are dropped
+            if (sectionY < Chunk.SECTIONS) {
+                sections[sectionY] = section;
+            }
+        }
+        return new Chunk(x, z, sections);
+    }
+
+    private static ChunkSection decodeSection(ByteBuffer buffer) {
+        int flags = buffer.get();
+
+        byte[] palette = null;
+        if ((flags & FLAG_PALETTE) != 0) {
+            palette = new byte[(buffer.get() & 0xFF) + 1];
+            buffer.get(palette);
+        }
+
+        byte[] blocks = new byte[VOLUME];
+        if ((flags & FLAG_RUN_LENGTH) != 0) {
+            readRuns(buffer, blocks);
+        } else if (palette != null) {
+            readPacked(buffer, blocks, bitsFor(palette.length));
+        } else {
+            buffer.get(blocks);
+        }
+
+        if (palette != null) {
+            for (int i = 0; i < VOLUME; i++) {
+                blocks[i] = palette[blocks[i] & 0xFF];
+            }
+        }
+        return new ChunkSection(BlockStorage.of(blocks));
+    }
+
+    public static void write(Path path, Chunk chunk) throws IOException {
+        ByteBuffer buffer = encode(chunk);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    public static Chunk read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Keep reading until the whole file is in the buffer
+            }
+            buffer.flip();
+            return decode(buffer);
+        }
+    }
+
+    private static int bitsFor(int paletteSize) {
+        if (paletteSize <= 2) {
+            return 1;
+        } else if (paletteSize <= 4) {
+            return 2;
+        } else if (paletteSize <= 16) {
+            return 4;
+        }
+        return 8;
+    }
+
+    private static int runLengthSize(byte[] blocks) {
+        int size = 4;
+        int i = 0;
+        while (i < VOLUME) {
+            int length = runLength(blocks, i);
+            size += varIntSize(length) + 1;
+            i += length;
+        }
+        return size;
+    }
+
+    private static int runLength(byte[] blocks, int start) {
+        int end = start + 1;
+        while (end < VOLUME && blocks[end] == blocks[start]) {
+            end++;
+        }
+        return end - start;
+    }
+
+    private static void writeRuns(ByteBuffer buffer, byte[] values) {
+        int countPosition = buffer.position();
+        buffer.putInt(0);
+        int runs = 0;
+        int i = 0;
+        while (i < VOLUME) {
+            int length = runLength(values, i);
+            putVarInt(buffer, length);
+            buffer.put(values[i]);
+            i += length;
+            runs++;
+        }
+        buffer.putInt(countPosition, runs);
+    }
+
+    private static void readRuns(ByteBuffer buffer, byte[] values) {
+        int runs = buffer.getInt();
+        int i = 0;
+        for (int run = 0; run < runs; run++) {
+            int length = getVarInt(buffer);
+            byte value = buffer.get();
+            if (i + length > VOLUME) {
+                throw new IllegalArgumentException("Chunk runs exceed chunk volume");
+            }
+            for (int end = i + length; i < end; i++) {
+                values[i] = value;
+            }
+        }
+        if (i != VOLUME) {
+            throw new IllegalArgumentException("Chunk runs do not cover the chunk");
+        }
+    }
+
+    private static void writePacked(ByteBuffer buffer, byte[] values, int bits) {
+        int perByte = 8 / bits;
+        for (int i = 0; i < VOLUME; i += perByte) {
+            int packed = 0;
+            for (int j = 0; j < perByte; j++) {
+                packed |= (values[i + j] & 0xFF) << (j * bits);
+            }
+            buffer.put((byte) packed);
+        }
+    }
+
+    private static void readPacked(ByteBuffer buffer, byte[] values, int bits) {
+        int perByte = 8 / bits;
+        int mask = (1 << bits) - 1;
+        for (int i = 0; i < VOLUME; i += perByte) {
+            int packed = buffer.get() & 0xFF;
+            for (int j = 0; j < perByte; j++) {
+                values[i + j] = (byte) ((packed >> (j * bits)) & mask);
+            }
+        }
+    }
+
+    private static int varIntSize(int value) {
+        int size = 1;
+        while ((value >>>= 7) != 0) {
+            size++;
+        }
+        return size;
+    }
+
+    private static void putVarInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int getVarInt(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -0,0 +1,51 @@
+package game.world;
+
+import java.util.Iterator;
+
+/**
+ * Loaded chunks by chunk coordinates, in a LongMap keyed by key(x, z) so lookups never box a key.
+ *
+ * Not thread safe, and iteration must not overlap with put or remove.
+ */
+public class ChunkMap implements Iterable<Chunk> {
+    private final LongMap<Chunk> chunks = new LongMap<>();
+
+    public static long key(int x, int z) {
+        return ((long) x << 32) | (z & 0xFFFFFFFFL);
+    }
+
+    public Chunk get(int x, int z) {
+        return chunks.get(key(x, z));
+    }
+
+    public boolean contains(int x, int z) {
+        return get(x, z) != null;
+    }
+
+    /**
+     * Adds the chunk under its own coordinates and returns the chunk it replaced, if any.
+     */
+    public Chunk put(Chunk chunk) {
+        return chunks.put(key(chunk.getX(), chunk.getZ()), chunk);
+    }
+
+    /**
+     * Removes and returns the chunk at the given chunk coordinates, or null if there is none.
+     */
+    public Chunk remove(int x, int z) {
+        return chunks.remove(key(x, z));
+    }
+
+    public int size() {
+        return chunks.size();
+    }
+
+    public boolean isEmpty() {
+        return chunks.isEmpty();
+    }
+
+    @Override
+    public Iterator<Chunk> iterator() {
+        return chunks.iterator();
+    }
+}
@@ -0,0 +1,113 @@
+package game.world;
+
+import game.renderer.ChunkMesh;
+import game.renderer.MeshBuilder;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Meshes section snapshots on a pool of worker threads. Finished meshes are queued until the
+ * GL thread polls them, so neither block edits nor chunk loads mesh on the render thread.
+ */
+public class ChunkMeshPipeline {
+    private final ExecutorService workers;
+    private final Queue<Result> finished;
+
+    public ChunkMeshPipeline() {
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        AtomicInteger threadCount = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "chunk-mesher-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        finished = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Meshes the snapshot on a worker, downsampled to cells of scale^3 blocks when scale is above 1,
+     * and works out the section's connectivity from the full-resolution blocks.
+     */
+    public void submit(Chunk chunk, ChunkSnapshot snapshot, ChunkMesher mesher, int revision, int scale) {
+        int sectionY = snapshot.getSectionY();
+        workers.execute(() -> {
+            try {
+                MeshBuilder meshData = MeshBuilder.get();
+                mesher.mesh(scale > 1 ? snapshot.downsample(scale) : snapshot, meshData);
+                long connectivity = SectionConnectivity.compute(snapshot);
+                finished.add(new Result(chunk, sectionY, revision, meshData.build(), connectivity));
+            } catch (Exception e) {
+                e.printStackTrace();
+                // Still report the revision, the section would otherwise wait on it forever
+                finished.add(new Result(chunk, sectionY, revision, null, SectionConnectivity.ALL));
+            }
+        });
+    }
+
+    /**
+     * Returns the next finished mesh, or null if none is ready. The caller owns the mesh and must
+     * free it once it is uploaded or dropped.
+     */
+    public Result poll() {
+        return finished.poll();
+    }
+
+    public void shutdown() {
+        workers.shutdownNow();
+        try {
+            workers.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Result result;
+        while ((result = finished.poll()) != null) {
+            if (result.getMesh() != null) {
+                result.getMesh().free();
+            }
+        }
+    }
+
+    public static class Result {
+        private final Chunk chunk;
+        private final int sectionY;
+        private final int revision;
+        private final ChunkMesh mesh;
+        private final long connectivity;
+
+        Result(Chunk chunk, int sectionY, int revision, ChunkMesh mesh, long connectivity) {
+            this.chunk = chunk;
+            this.sectionY = sectionY;
+            this.revision = revision;
+            this.mesh = mesh;
+            this.connectivity = connectivity;
+        }
+
+        public Chunk getChunk() {
+            return chunk;
+        }
+
+        public int getSectionY() {
+            return sectionY;
+        }
+
+        public int getRevision() {
+            return revision;
+        }
+
+        /**
+         * Returns the finished mesh, or null if meshing failed and the previous mesh should stay.
+         */
+        public ChunkMesh getMesh() {
+            return mesh;
+        }
+
+        public long getConnectivity() {
+            return connectivity;
+        }
+    }
+}
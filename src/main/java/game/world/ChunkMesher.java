@@ -0,0 +1,53 @@
+package game.world;
+
+import game.renderer.MeshBuilder;
+
+public interface ChunkMesher {
+    // Face index -> axis of the face normal (0 = x, 1 = y, 2 = z) and its direction
+    int[] FACE_AXIS = {2, 2, 1, 1, 0, 0};
+    int[] FACE_DIRECTION = {1, -1, 1, -1, 1, -1};
+
+    void mesh(ChunkSnapshot chunk, MeshBuilder meshData);
+
+    /**
+     * Emits one quad for a face covering sizeX * sizeY * sizeZ blocks, starting at the block at (x, y, z)
+     * in section-local coordinates. The size along the face normal must be one cell, so 1 at full
+     * resolution and the scale of a downsampled snapshot otherwise. Texture coordinates are
+     * in blocks, so a merged quad repeats its atlas tile once per block.
+     */
+    static void addFace(MeshBuilder meshData, byte blockType, int face,
+                        int x, int y, int z, int sizeX, int sizeY, int sizeZ) {
+        float[] vertices = Block.getVertices();
+        int tile = Block.getTextureIndex(blockType, face);
+        int base = face * 12;
+
+        // u runs along the axis that changes between the first two corners, v along the next edge
+        int u = edgeLength(vertices, base, base + 3, sizeX, sizeY, sizeZ);
+        int v = edgeLength(vertices, base + 3, base + 6, sizeX, sizeY, sizeZ);
+
+        // Corners are stored as block coordinates, chunk.vert moves them back by half a block
+        for (int i = 0; i < 4; i++) {
+            int corner = base + i * 3;
+            meshData.vertex(
+                x + (vertices[corner] > 0 ? sizeX : 0),
+                y + (vertices[corner + 1] > 0 ? sizeY : 0),
+                z + (vertices[corner + 2] > 0 ? sizeZ : 0),
+                face,
+                MeshBuilder.MAX_LIGHT,
+                (i == 1 || i == 2) ? u : 0,
+                i >= 2 ? v : 0,
+                tile
+            );
+        }
+    }
+
+    private static int edgeLength(float[] vertices, int from, int to, int sizeX, int sizeY, int sizeZ) {
+        if (vertices[from] != vertices[to]) {
+            return sizeX;
+        }
+        if (vertices[from + 1] != vertices[to + 1]) {
+            return sizeY;
+        }
+        return sizeZ;
+    }
+}
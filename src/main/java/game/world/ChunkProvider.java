@@ -0,0 +1,8 @@
+package game.world;
+
+public interface ChunkProvider {
+    /**
+     * Returns the loaded chunk at the given chunk coordinates, or null if it is not loaded.
+     */
+    Chunk getChunk(int x, int z);
+}
@@ -0,0 +1,62 @@
+package game.world;
+
+/**
+ * One 16x16x16 slice of a chunk column. Sections that contain only air are not allocated,
+ * Chunk keeps null in their place.
+ */
+public class ChunkSection {
+    private final BlockStorage blocks;
+    private boolean isDirty; // Whether the section needs to be re-meshed
+
+    public ChunkSection(BlockStorage blocks) {
+        this.blocks = blocks;
+        this.isDirty = true;
+    }
+
+    public byte getBlock(int x, int y, int z) {
+        return blocks.get(BlockStorage.index(x, y, z));
+    }
+
+    public void setBlock(int x, int y, int z, byte blockType) {
+        blocks.set(BlockStorage.index(x, y, z), blockType);
+        isDirty = true;
+    }
+
+    /**
+     * Returns true if the section holds no blocks other than air and can be dropped.
+     */
+    public boolean isEmpty() {
+        return blocks.isUniform() && blocks.getUniformValue() == Block.AIR;
+    }
+
+    /**
+     * Returns true if any block other than air lies on the x = coordinate plane (axis 0) or the
+     * z = coordinate plane (axis 2), the blocks that face a neighboring column.
+     */
+    public boolean hasBlocksInPlane(int axis, int coordinate) {
+        if (blocks.isUniform()) {
+            return blocks.getUniformValue() != Block.AIR;
+        }
+        for (int y = 0; y < Chunk.SIZE; y++) {
+            for (int i = 0; i < Chunk.SIZE; i++) {
+                int index = axis == 0 ? BlockStorage.index(coordinate, y, i) : BlockStorage.index(i, y, coordinate);
+                if (blocks.get(index) != Block.AIR) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public boolean isDirty() {
+        return isDirty;
+    }
+
+    public void setDirty(boolean isDirty) {
+        this.isDirty = isDirty;
+    }
+
+    public BlockStorage getStorage() {
+        return blocks;
+    }
+}
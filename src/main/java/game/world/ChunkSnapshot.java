@@ -0,0 +1,189 @@
+package game.world;
+
+/**
+ * Immutable copy of one chunk section's blocks padded by one block on every side, so meshing can
+ * cull faces against neighboring sections without touching the live world.
+ * Padding towards chunks that are not loaded, empty sections and outside the world is air.
+ *
+ * A downsampled snapshot holds cells of scale^3 blocks for level-of-detail meshes. Coordinates then
+ * count cells, getSize() of them per axis, and meshers multiply positions by getScale().
+ */
+public class ChunkSnapshot {
+    private static final int SIZE = Chunk.SIZE;
+
+    private final int chunkX;
+    private final int sectionY;
+    private final int chunkZ;
+    // Cells per axis without padding, and blocks per cell along each axis
+    private final int size;
+    private final int scale;
+    private final int padded;
+    private final byte[] blocks;
+
+    public ChunkSnapshot(Chunk chunk, int sectionY, ChunkProvider neighbors) {
+        this(chunk.getX(), sectionY, chunk.getZ(), 1);
+
+        ChunkSection section = chunk.getSection(sectionY);
+        if (section != null) {
+            // Storage is y-major like the padded array, so each row of 16 copies in one go
+            byte[] flat = new byte[BlockStorage.VOLUME];
+            section.getStorage().copyTo(flat);
+            for (int y = 0; y < SIZE; y++) {
+                for (int z = 0; z < SIZE; z++) {
+                    System.arraycopy(flat, BlockStorage.index(0, y, z), blocks, index(0, y, z), SIZE);
+                }
+            }
+        }
+
+        copyLayer(chunk.getSection(sectionY - 1), SIZE - 1, -1);
+        copyLayer(chunk.getSection(sectionY + 1), 0, SIZE);
+        if (neighbors != null) {
+            copyBorder(neighbors.getChunk(chunkX - 1, chunkZ), SIZE - 1, -1, true);
+            copyBorder(neighbors.getChunk(chunkX + 1, chunkZ), 0, SIZE, true);
+            copyBorder(neighbors.getChunk(chunkX, chunkZ - 1), SIZE - 1, -1, false);
+            copyBorder(neighbors.getChunk(chunkX, chunkZ + 1), 0, SIZE, false);
+        }
+    }
+
+    private ChunkSnapshot(int chunkX, int sectionY, int chunkZ, int scale) {
+        this.chunkX = chunkX;
+        this.sectionY = sectionY;
+        this.chunkZ = chunkZ;
+        this.size = SIZE / scale;
+        this.scale = scale;
+        this.padded = size + 2;
+        this.blocks = new byte[padded * padded * padded];
+    }
+
+    /**
+     * Returns a copy of this full-resolution snapshot with cells of scale^3 blocks, scale being 2, 4
+     * or 8. Downsampling is conservative so level-of-detail seams never open a crack: a cell is
+     * solid if any of its blocks is, showing the topmost one, so its volume covers the real one,
+     * while a padding cell only hides a face if every block it covers across the border is opaque.
+     */
+    public ChunkSnapshot downsample(int scale) {
+        if (this.scale != 1 || scale < 2 || SIZE % scale != 0) {
+            throw new IllegalArgumentException("Cannot downsample by " + scale);
+        }
+        ChunkSnapshot lod = new ChunkSnapshot(chunkX, sectionY, chunkZ, scale);
+        int size = lod.size;
+        for (int y = 0; y < size; y++) {
+            for (int z = 0; z < size; z++) {
+                for (int x = 0; x < size; x++) {
+                    lod.blocks[lod.index(x, y, z)] = topmostBlock(x * scale, y * scale, z * scale, scale);
+                }
+            }
+        }
+
+        // Only face padding is read by the meshers, edges and corners stay air
+        for (int v = 0; v < size; v++) {
+            for (int u = 0; u < size; u++) {
+                lod.blocks[lod.index(-1, u, v)] = coveringBlock(0, -1, u * scale, v * scale, scale);
+                lod.blocks[lod.index(size, u, v)] = coveringBlock(0, SIZE, u * scale, v * scale, scale);
+                lod.blocks[lod.index(v, -1, u)] = coveringBlock(1, -1, u * scale, v * scale, scale);
+                lod.blocks[lod.index(v, size, u)] = coveringBlock(1, SIZE, u * scale, v * scale, scale);
+                lod.blocks[lod.index(u, v, -1)] = coveringBlock(2, -1, u * scale, v * scale, scale);
+                lod.blocks[lod.index(u, v, size)] = coveringBlock(2, SIZE, u * scale, v * scale, scale);
+            }
+        }
+        return lod;
+    }
+
+    // The first non-air block of a cell scanning from its top layer down, or air
+    private byte topmostBlock(int minX, int minY, int minZ, int scale) {
+        for (int y = minY + scale - 1; y >= minY; y--) {
+            for (int z = minZ; z < minZ + scale; z++) {
+                for (int x = minX; x < minX + scale; x++) {
+                    byte block = blocks[index(x, y, z)];
+                    if (block != Block.AIR) {
+                        return block;
+                    }
+                }
+            }
+        }
+        return Block.AIR;
+    }
+
+    // One of the blocks of a padding square if all of them are opaque, otherwise air. The square lies
+    // at the given layer along axis and spans scale blocks along the two following axes, in order.
+    private byte coveringBlock(int axis, int layer, int minU, int minV, int scale) {
+        int[] pos = new int[3];
+        pos[axis] = layer;
+        byte covering = Block.AIR;
+        for (int v = minV; v < minV + scale; v++) {
+            for (int u = minU; u < minU + scale; u++) {
+                pos[(axis + 1) % 3] = u;
+                pos[(axis + 2) % 3] = v;
+                byte block = blocks[index(pos[0], pos[1], pos[2])];
+                if (Block.isTransparent(block)) {
+                    return Block.AIR;
+                }
+                covering = block;
+            }
+        }
+        return covering;
+    }
+
+    // Copies the horizontal layer at y = from of the section above or below into the padding
+    private void copyLayer(ChunkSection section, int from, int to) {
+        if (section == null) {
+            return;
+        }
+        for (int z = 0; z < SIZE; z++) {
+            for (int x = 0; x < SIZE; x++) {
+                blocks[index(x, to, z)] = section.getBlock(x, from, z);
+            }
+        }
+    }
+
+    // Copies one edge layer of a neighbor into the padding; alongX selects the x or z border
+    private void copyBorder(Chunk neighbor, int from, int to, boolean alongX) {
+        ChunkSection section = neighbor != null ? neighbor.getSection(sectionY) : null;
+        if (section == null) {
+            return;
+        }
+        for (int y = 0; y < SIZE; y++) {
+            for (int i = 0; i < SIZE; i++) {
+                if (alongX) {
+                    blocks[index(to, y, i)] = section.getBlock(from, y, i);
+                } else {
+                    blocks[index(i, y, to)] = section.getBlock(i, y, from);
+                }
+            }
+        }
+    }
+
+    private int index(int x, int y, int z) {
+        return ((y + 1) * padded + (z + 1)) * padded + (x + 1);
+    }
+
+    /**
+     * Returns the block at section-local cell coordinates, which may lie one cell outside the section.
+     */
+    public byte getBlock(int x, int y, int z) {
+        if (x < -1 || x > size || y < -1 || y > size || z < -1 || z > size) {
+            return Block.AIR;
+        }
+        return blocks[index(x, y, z)];
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getScale() {
+        return scale;
+    }
+
+    public int getChunkX() {
+        return chunkX;
+    }
+
+    public int getSectionY() {
+        return sectionY;
+    }
+
+    public int getChunkZ() {
+        return chunkZ;
+    }
+}
@@ -0,0 +1,209 @@
+package game.world;
+
+import org.joml.Vector3f;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps the chunks within the render distance of the player loaded. Chunks are read from the save
+ * or generated on a fork-join pool, nearest and in view first, and chunks that fall out of range
+ * are queued for saving and dropped.
+ */
+public class ChunkStreamer {
+    // Chunks stay loaded this far beyond the render distance so walking along a border does not thrash
+    private static final int UNLOAD_MARGIN = 1;
+    // Requests queued per loader thread, enough to keep every thread busy between frames
+    private static final int REQUESTS_PER_THREAD = 4;
+    // Adding a chunk is cheap, meshing and uploads are budgeted by World
+    private static final int MAX_ADDS_PER_FRAME = 16;
+
+    private final World world;
+    private final WorldSaveManager saveManager;
+    private final ExecutorService loader;
+    private final int maxInFlight;
+    private final Queue<Chunk> loaded;
+    // Chunks requested from the loader and not yet added to the world
+    private final Set<Long> pending;
+    private int renderDistance;
+    private int centerX;
+    private int centerZ;
+    private boolean centerKnown;
+
+    public ChunkStreamer(World world, WorldSaveManager saveManager, int renderDistance) {
+        this.world = world;
+        this.saveManager = saveManager;
+        this.renderDistance = renderDistance;
+        this.loaded = new ConcurrentLinkedQueue<>();
+        this.pending = new HashSet<>();
+
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        this.maxInFlight = threads * REQUESTS_PER_THREAD;
+        AtomicInteger threadCount = new AtomicInteger();
+        // Async mode runs requests in submission order, which is nearest first
+        this.loader = new ForkJoinPool(threads, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("chunk-loader-" + threadCount.incrementAndGet());
+            return thread;
+        }, null, true);
+    }
+
+    /**
+     * Loads, adds and unloads chunks around the given position. Must be called once per frame from the
+     * GL thread; direction is the normalized view direction used to load visible chunks first.
+     */
+    public void update(Vector3f position, Vector3f direction) {
+        int chunkX = Math.floorDiv(Block.toBlockCoordinate(position.x), Chunk.SIZE);
+        int chunkZ = Math.floorDiv(Block.toBlockCoordinate(position.z), Chunk.SIZE);
+        if (!centerKnown || chunkX != centerX || chunkZ != centerZ) {
+            centerX = chunkX;
+            centerZ = chunkZ;
+            centerKnown = true;
+            unloadOutOfRange();
+        }
+
+        addLoadedChunks();
+        requestMissingChunks(direction);
+    }
+
+    private void addLoadedChunks() {
+        Chunk chunk;
+        int added = 0;
+        while (added < MAX_ADDS_PER_FRAME && (chunk = loaded.poll()) != null) {
+            pending.remove(World.getChunkKey(chunk.getX(), chunk.getZ()));
+            // The player may have moved on while the chunk was loading
+            if (distanceSquared(chunk.getX(), chunk.getZ()) > square(renderDistance + UNLOAD_MARGIN)) {
+                continue;
+            }
+            world.addChunk(chunk);
+            added++;
+        }
+    }
+
+    private void requestMissingChunks(Vector3f direction) {
+        int slots = maxInFlight - pending.size();
+        if (slots <= 0) {
+            return;
+        }
+
+        List<Candidate> candidates = null;
+        for (int dx = -renderDistance; dx <= renderDistance; dx++) {
+            for (int dz = -renderDistance; dz <= renderDistance; dz++) {
+                if (dx * dx + dz * dz > renderDistance * renderDistance) {
+                    continue;
+                }
+                int x = centerX + dx;
+                int z = centerZ + dz;
+                if (pending.contains(World.getChunkKey(x, z)) || world.getChunk(x, z) != null) {
+                    continue;
+                }
+                if (candidates == null) {
+                    candidates = new ArrayList<>();
+                }
+                candidates.add(new Candidate(x, z, priority(dx, dz, direction)));
+            }
+        }
+        if (candidates == null) {
+            return;
+        }
+
+        candidates.sort((a, b) -> Float.compare(a.priority, b.priority));
+        for (int i = 0; i < Math.min(slots, candidates.size()); i++) {
+            int x = candidates.get(i).x;
+            int z = candidates.get(i).z;
+            pending.add(World.getChunkKey(x, z));
+
+            loader.execute(() -> {
+                try {
+                    Chunk chunk = saveManager != null ? saveManager.readChunk(x, z) : null;
+                    loaded.add(chunk != null ? chunk : world.generateChunk(x, z));
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    loaded.add(world.generateChunk(x, z));
+                }
+            });
+        }
+    }
+
+    // Lower is loaded sooner: distance in chunks, doubled for chunks straight behind the camera
+    private float priority(int dx, int dz, Vector3f direction) {
+        float distance = (float) Math.sqrt(dx * dx + dz * dz);
+        if (distance == 0) {
+            return 0;
+        }
+        float horizontal = (float) Math.sqrt(direction.x * direction.x + direction.z * direction.z);
+        if (horizontal == 0) {
+            return distance;
+        }
+        float facing = (dx * direction.x + dz * direction.z) / (distance * horizontal);
+        return distance * (1.5f - 0.5f * facing);
+    }
+
+    private void unloadOutOfRange() {
+        int limit = square(renderDistance + UNLOAD_MARGIN);
+        List<Chunk> outOfRange = new ArrayList<>();
+        for (Chunk chunk : world.getChunks()) {
+            if (distanceSquared(chunk.getX(), chunk.getZ()) > limit) {
+                outOfRange.add(chunk);
+            }
+        }
+
+        for (Chunk chunk : outOfRange) {
+            world.unloadChunk(chunk.getX(), chunk.getZ());
+            // Queued for the background writer, and only if it changed since it was loaded
+            if (saveManager != null) {
+                saveManager.saveChunk(chunk);
+            }
+        }
+    }
+
+    private int distanceSquared(int chunkX, int chunkZ) {
+        int dx = chunkX - centerX;
+        int dz = chunkZ - centerZ;
+        return dx * dx + dz * dz;
+    }
+
+    private static int square(int value) {
+        return value * value;
+    }
+
+    public int getRenderDistance() {
+        return renderDistance;
+    }
+
+    public void setRenderDistance(int renderDistance) {
+        this.renderDistance = renderDistance;
+        // Force an unload pass against the new distance on the next update
+        this.centerKnown = false;
+    }
+
+    public void shutdown() {
+        loader.shutdownNow();
+        try {
+            loader.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class Candidate {
+        final int x;
+        final int z;
+        final float priority;
+
+        Candidate(int x, int z, float priority) {
+            this.x = x;
+            this.z = z;
+            this.priority = priority;
+        }
+    }
+}
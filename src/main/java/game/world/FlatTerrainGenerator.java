@@ -0,0 +1,34 @@
+package game.world;
+
+/**
+ * Grass on three layers of dirt on stone, the same at every column.
+ */
+public class FlatTerrainGenerator implements TerrainGenerator {
+    private static final int HEIGHT = 4;
+
+    @Override
+    public Chunk generate(int chunkX, int chunkZ) {
+        byte[] blocks = new byte[BlockStorage.VOLUME];
+        for (int x = 0; x < Chunk.SIZE; x++) {
+            for (int z = 0; z < Chunk.SIZE; z++) {
+                for (int y = 0; y <= HEIGHT; y++) {
+                    if (y == HEIGHT) {
+                        blocks[BlockStorage.index(x, y, z)] = Block.GRASS;
+                    } else if (y > HEIGHT - 4) {
+                        blocks[BlockStorage.index(x, y, z)] = Block.DIRT;
+                    } else {
+                        blocks[BlockStorage.index(x, y, z)] = Block.STONE;
+                    }
+                }
+            }
+        }
+        Chunk chunk = new Chunk(chunkX, chunkZ);
+        chunk.setSection(0, new ChunkSection(BlockStorage.of(blocks)));
+        return chunk;
+    }
+
+    @Override
+    public int getSurfaceHeight(int x, int z) {
+        return HEIGHT;
+    }
+}
@@ -0,0 +1,90 @@
+package game.world;
+
+import game.renderer.MeshBuilder;
+
+/**
+ * Merges coplanar, adjacent faces of the same block type into as few quads as possible.
+ */
+public class GreedyMesher implements ChunkMesher {
+    @Override
+    public void mesh(ChunkSnapshot chunk, MeshBuilder meshData) {
+        // Cells of a downsampled snapshot are meshed like blocks and scaled up when emitted
+        int cells = chunk.getSize();
+        int scale = chunk.getScale();
+        byte[] mask = new byte[cells * cells];
+        int[] pos = new int[3];
+        int[] size = new int[3];
+
+        for (int face = 0; face < 6; face++) {
+            int axis = FACE_AXIS[face];
+            int dir = FACE_DIRECTION[face];
+            // The two axes spanning the face plane
+            int uAxis = (axis + 1) % 3;
+            int vAxis = (axis + 2) % 3;
+
+            for (int slice = 0; slice < cells; slice++) {
+                // Build the mask of visible faces in this slice
+                pos[axis] = slice;
+                for (int v = 0; v < cells; v++) {
+                    for (int u = 0; u < cells; u++) {
+                        pos[uAxis] = u;
+                        pos[vAxis] = v;
+                        byte blockType = chunk.getBlock(pos[0], pos[1], pos[2]);
+                        byte neighbor = chunk.getBlock(
+                            pos[0] + (axis == 0 ? dir : 0),
+                            pos[1] + (axis == 1 ? dir : 0),
+                            pos[2] + (axis == 2 ? dir : 0)
+                        );
+                        boolean visible = blockType != Block.AIR && Block.isTransparent(neighbor);
+                        mask[v * cells + u] = visible ? blockType : Block.AIR;
+                    }
+                }
+
+                // Grow rectangles of equal block type, first along u then along v
+                for (int v = 0; v < cells; v++) {
+                    for (int u = 0; u < cells; ) {
+                        byte blockType = mask[v * cells + u];
+                        if (blockType == Block.AIR) {
+                            u++;
+                            continue;
+                        }
+
+                        int width = 1;
+                        while (u + width < cells && mask[v * cells + u + width] == blockType) {
+                            width++;
+                        }
+
+                        int height = 1;
+                        outer:
+                        while (v + height < cells) {
+                            for (int k = 0; k < width; k++) {
+                                if (mask[(v + height) * cells + u + k] != blockType) {
+                                    break outer;
+                                }
+                            }
+                            height++;
+                        }
+
+                        pos[axis] = slice;
+                        pos[uAxis] = u;
+                        pos[vAxis] = v;
+                        size[axis] = 1;
+                        size[uAxis] = width;
+                        size[vAxis] = height;
+                        ChunkMesher.addFace(meshData, blockType, face,
+                            pos[0] * scale, pos[1] * scale, pos[2] * scale,
+                            size[0] * scale, size[1] * scale, size[2] * scale);
+
+                        // Clear the merged area so it is not emitted again
+                        for (int h = 0; h < height; h++) {
+                            for (int k = 0; k < width; k++) {
+                                mask[(v + h) * cells + u + k] = Block.AIR;
+                            }
+                        }
+                        u += width;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package game.world;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Map from primitive long keys to values, in an open-addressing table so lookups neither box a key
+ * nor chase a hash bucket. Null values are not allowed.
+ *
+ * Not thread safe, and iteration must not overlap with put or remove.
+ */
+public class LongMap<V> implements Iterable<V> {
+    private static final int INITIAL_CAPACITY = 256;
+
+    private long[] keys;
+    // A null value marks a free slot
+    private Object[] values;
+    private int mask;
+    private int size;
+
+    public LongMap() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            Object value = values[slot];
+            if (value == null || keys[slot] == key) {
+                return (V) value;
+            }
+        }
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Maps the key to the value and returns the value it replaced, if any.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        // Keep at least half the slots free so probe runs stay short
+        if ((size + 1) * 2 > values.length) {
+            resize(values.length * 2);
+        }
+        int slot = slot(key);
+        while (values[slot] != null) {
+            if (keys[slot] == key) {
+                V previous = (V) values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        return null;
+    }
+
+    /**
+     * Removes and returns the value of the key, or null if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int slot = slot(key);
+        while (values[slot] != null && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        V removed = (V) values[slot];
+        if (removed == null) {
+            return null;
+        }
+
+        // Shift later entries of the probe run back so lookups never stop at the hole too early
+        int hole = slot;
+        for (int next = (hole + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+            int home = slot(keys[next]);
+            // Move the entry unless its home lies cyclically after the hole and up to its slot
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        values[hole] = null;
+        size--;
+        return removed;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Iterates over the values in table order.
+     */
+    @Override
+    public Iterator<V> iterator() {
+        return new Iterator<>() {
+            private int slot = advance(0);
+
+            private int advance(int from) {
+                while (from < values.length && values[from] == null) {
+                    from++;
+                }
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return slot < values.length;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public V next() {
+                if (slot >= values.length) {
+                    throw new NoSuchElementException();
+                }
+                V value = (V) values[slot];
+                slot = advance(slot + 1);
+                return value;
+            }
+        };
+    }
+
+    private int slot(long key) {
+        // Fibonacci hashing spreads neighboring coordinates over the table
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = slot(oldKeys[i]);
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
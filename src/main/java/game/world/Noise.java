@@ -0,0 +1,127 @@
+package game.world;
+
+import java.util.SplittableRandom;
+
+/**
+ * Seeded gradient (Perlin) noise in two and three dimensions, returning values in about [-1, 1].
+ * The permutation table is filled once from the seed and never changed, so instances can be
+ * shared between threads and always return the same value for the same input.
+ */
+public class Noise {
+    private static final int[][] GRADIENTS_3D = {
+        {1, 1, 0}, {-1, 1, 0}, {1, -1, 0}, {-1, -1, 0},
+        {1, 0, 1}, {-1, 0, 1}, {1, 0, -1}, {-1, 0, -1},
+        {0, 1, 1}, {0, -1, 1}, {0, 1, -1}, {0, -1, -1},
+        {1, 1, 0}, {0, -1, 1}, {-1, 1, 0}, {0, -1, -1}
+    };
+
+    // Doubled so lookups never need to wrap
+    private final int[] permutation = new int[512];
+
+    public Noise(long seed) {
+        int[] values = new int[256];
+        for (int i = 0; i < 256; i++) {
+            values[i] = i;
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 255; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = values[i];
+            values[i] = values[j];
+            values[j] = swap;
+        }
+        for (int i = 0; i < 512; i++) {
+            permutation[i] = values[i & 255];
+        }
+    }
+
+    public double noise(double x, double y) {
+        int cellX = (int) Math.floor(x);
+        int cellY = (int) Math.floor(y);
+        x -= cellX;
+        y -= cellY;
+        cellX &= 255;
+        cellY &= 255;
+        double u = fade(x);
+        double v = fade(y);
+
+        int a = permutation[cellX] + cellY;
+        int b = permutation[cellX + 1] + cellY;
+        return lerp(v,
+            lerp(u, grad(permutation[a], x, y), grad(permutation[b], x - 1, y)),
+            lerp(u, grad(permutation[a + 1], x, y - 1), grad(permutation[b + 1], x - 1, y - 1)));
+    }
+
+    public double noise(double x, double y, double z) {
+        int cellX = (int) Math.floor(x);
+        int cellY = (int) Math.floor(y);
+        int cellZ = (int) Math.floor(z);
+        x -= cellX;
+        y -= cellY;
+        z -= cellZ;
+        cellX &= 255;
+        cellY &= 255;
+        cellZ &= 255;
+        double u = fade(x);
+        double v = fade(y);
+        double w = fade(z);
+
+        int a = permutation[cellX] + cellY;
+        int aa = permutation[a] + cellZ;
+        int ab = permutation[a + 1] + cellZ;
+        int b = permutation[cellX + 1] + cellY;
+        int ba = permutation[b] + cellZ;
+        int bb = permutation[b + 1] + cellZ;
+        return lerp(w,
+            lerp(v,
+                lerp(u, grad(permutation[aa], x, y, z), grad(permutation[ba], x - 1, y, z)),
+                lerp(u, grad(permutation[ab], x, y - 1, z), grad(permutation[bb], x - 1, y - 1, z))),
+            lerp(v,
+                lerp(u, grad(permutation[aa + 1], x, y, z - 1), grad(permutation[ba + 1], x - 1, y, z - 1)),
+                lerp(u, grad(permutation[ab + 1], x, y - 1, z - 1), grad(permutation[bb + 1], x - 1, y - 1, z - 1))));
+    }
+
+    /**
+     * Sums octaves of 2D noise, each at twice the frequency and half the amplitude of the last.
+     */
+    public double fractal(double x, double y, int octaves) {
+        double sum = 0;
+        double amplitude = 1;
+        double total = 0;
+        for (int i = 0; i < octaves; i++) {
+            sum += noise(x, y) * amplitude;
+            total += amplitude;
+            x *= 2;
+            y *= 2;
+            amplitude *= 0.5;
+        }
+        return sum / total;
+    }
+
+    private static double fade(double t) {
+        return t * t * t * (t * (t * 6 - 15) + 10);
+    }
+
+    private static double lerp(double t, double a, double b) {
+        return a + t * (b - a);
+    }
+
+    private static double grad(int hash, double x, double y) {
+        // Eight directions around the unit square
+        switch (hash & 7) {
+            case 0: return x + y;
+            case 1: return -x + y;
+            case 2: return x - y;
+            case 3: return -x - y;
+            case 4: return x;
+            case 5: return -x;
+            case 6: return y;
+            default: return -y;
+        }
+    }
+
+    private static double grad(int hash, double x, double y, double z) {
+        int[] g = GRADIENTS_3D[hash & 15];
+        return g[0] * x + g[1] * y + g[2] * z;
+    }
+}
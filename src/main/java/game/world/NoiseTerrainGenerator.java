@@ -0,0 +1,145 @@
+package game.world;
+
+import java.util.SplittableRandom;
+
+/**
+ * Rolling terrain from layered 2D noise, hollowed out by tunnels where two 3D noise fields both
+ * cross zero, with veins of ore in the stone.
+ *
+ * Every random choice comes from the world seed and the block or chunk coordinates, never from
+ * shared state, so a chunk is identical whichever thread generates it and in whatever order.
+ * Ore veins stay within their own chunk for the same reason.
+ */
+public class NoiseTerrainGenerator implements TerrainGenerator {
+    private static final int SIZE = Chunk.SIZE;
+    // Average surface level, a quarter of the way up the column
+    private static final int BASE_HEIGHT = Chunk.HEIGHT / 4;
+    private static final int DIRT_DEPTH = 3;
+    // Tunnels are where both cave fields are within this distance of zero
+    private static final double CAVE_WIDTH = 0.08;
+    // Veins per chunk, largest vein size and highest y for each ore
+    private static final int COAL_VEINS = 20;
+    private static final int COAL_SIZE = 10;
+    private static final int IRON_VEINS = 10;
+    private static final int IRON_SIZE = 6;
+    private static final int IRON_MAX_Y = BASE_HEIGHT * 3 / 4;
+
+    private final long seed;
+    private final Noise continentNoise;
+    private final Noise hillNoise;
+    private final Noise caveNoiseA;
+    private final Noise caveNoiseB;
+
+    public NoiseTerrainGenerator(long seed) {
+        this.seed = seed;
+        this.continentNoise = new Noise(seed);
+        this.hillNoise = new Noise(seed + 1);
+        this.caveNoiseA = new Noise(seed + 2);
+        this.caveNoiseB = new Noise(seed + 3);
+    }
+
+    @Override
+    public Chunk generate(int chunkX, int chunkZ) {
+        byte[][] sections = new byte[Chunk.SECTIONS][];
+        int originX = chunkX * SIZE;
+        int originZ = chunkZ * SIZE;
+
+        for (int x = 0; x < SIZE; x++) {
+            for (int z = 0; z < SIZE; z++) {
+                int height = getSurfaceHeight(originX + x, originZ + z);
+                for (int y = 0; y <= height; y++) {
+                    // The bottom layer is never carved so nothing falls out of the world
+                    if (y > 0 && isCave(originX + x, y, originZ + z)) {
+                        continue;
+                    }
+                    byte block;
+                    if (y == height) {
+                        block = Block.GRASS;
+                    } else if (y >= height - DIRT_DEPTH) {
+                        block = Block.DIRT;
+                    } else {
+                        block = Block.STONE;
+                    }
+                    set(sections, x, y, z, block);
+                }
+            }
+        }
+
+        SplittableRandom random = new SplittableRandom(chunkSeed(chunkX, chunkZ));
+        placeOre(sections, random, Block.COAL_ORE, COAL_VEINS, COAL_SIZE, BASE_HEIGHT + BASE_HEIGHT / 2);
+        placeOre(sections, random, Block.IRON_ORE, IRON_VEINS, IRON_SIZE, IRON_MAX_Y);
+
+        Chunk chunk = new Chunk(chunkX, chunkZ);
+        for (int sectionY = 0; sectionY < Chunk.SECTIONS; sectionY++) {
+            if (sections[sectionY] != null) {
+                chunk.setSection(sectionY, new ChunkSection(BlockStorage.of(sections[sectionY])));
+            }
+        }
+        return chunk;
+    }
+
+    @Override
+    public int getSurfaceHeight(int x, int z) {
+        // Broad landmasses with smaller hills on top
+        double height = BASE_HEIGHT
+            + continentNoise.fractal(x / 256.0, z / 256.0, 4) * 32
+            + hillNoise.fractal(x / 48.0, z / 48.0, 3) * 8;
+        return Math.max(1, Math.min(Chunk.HEIGHT - 1, (int) Math.floor(height)));
+    }
+
+    private boolean isCave(int x, int y, int z) {
+        // Squashed vertically so tunnels run mostly horizontally
+        double a = caveNoiseA.noise(x / 40.0, y / 20.0, z / 40.0);
+        if (Math.abs(a) > CAVE_WIDTH) {
+            return false;
+        }
+        double b = caveNoiseB.noise(x / 40.0, y / 20.0, z / 40.0);
+        return Math.abs(b) <= CAVE_WIDTH;
+    }
+
+    // Random walks that turn stone into ore, starting at random points below maxY
+    private static void placeOre(byte[][] sections, SplittableRandom random, byte ore, int veins, int size, int maxY) {
+        for (int i = 0; i < veins; i++) {
+            int x = random.nextInt(SIZE);
+            int y = 1 + random.nextInt(Math.max(1, Math.min(maxY, Chunk.HEIGHT - 1)));
+            int z = random.nextInt(SIZE);
+            int blocks = 1 + random.nextInt(size);
+            for (int j = 0; j < blocks; j++) {
+                if (get(sections, x, y, z) == Block.STONE) {
+                    set(sections, x, y, z, ore);
+                }
+                switch (random.nextInt(6)) {
+                    case 0: x = Math.min(SIZE - 1, x + 1); break;
+                    case 1: x = Math.max(0, x - 1); break;
+                    case 2: y = Math.min(Chunk.HEIGHT - 1, y + 1); break;
+                    case 3: y = Math.max(1, y - 1); break;
+                    case 4: z = Math.min(SIZE - 1, z + 1); break;
+                    default: z = Math.max(0, z - 1); break;
+                }
+            }
+        }
+    }
+
+    private long chunkSeed(int chunkX, int chunkZ) {
+        return seed ^ (chunkX * 0x9E3779B97F4A7C15L) ^ (chunkZ * 0xC2B2AE3D27D4EB4FL);
+    }
+
+    private static byte get(byte[][] sections, int x, int y, int z) {
+        byte[] blocks = sections[y >> 4];
+        return blocks != null ? blocks[BlockStorage.index(x, y & 15, z)] : Block.AIR;
+    }
+
+    // Allocates a section the first time a block is placed in it
+    private static void set(byte[][] sections, int x, int y, int z, byte block) {
+        byte[] blocks = sections[y >> 4];
+        if (blocks == null) {
+            blocks = new byte[BlockStorage.VOLUME];
+            sections[y >> 4] = blocks;
+        }
+        blocks[BlockStorage.index(x, y & 15, z)] = block;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+}
@@ -0,0 +1,177 @@
+package game.world;
+
+import org.joml.FrustumIntersection;
+import org.joml.Vector3f;
+
+import java.util.Arrays;
+
+/**
+ * Finds the sections the camera can see into by flood filling outwards from the camera's section.
+ *
+ * A section is only entered through a face its predecessor connects to the face it was entered by,
+ * see SectionConnectivity, and never against a direction already travelled, so the fill cannot bend
+ * back around solid terrain. Sections outside the frustum are neither visited nor passed through.
+ */
+public class OcclusionCuller {
+    public interface SectionGraph {
+        boolean isColumnLoaded(int chunkX, int chunkZ);
+
+        /**
+         * Returns the SectionConnectivity of a section of a loaded column.
+         */
+        long getConnectivity(int chunkX, int sectionY, int chunkZ);
+    }
+
+    public interface SectionVisitor {
+        void visit(int chunkX, int sectionY, int chunkZ);
+    }
+
+    // Queue entries: chunk x, section y, chunk z, face entered through, directions travelled
+    private static final int ENTRY_INTS = 5;
+    private static final int SIZE = Chunk.SIZE;
+
+    private final SectionSet visited = new SectionSet();
+    private int[] queue = new int[1024 * ENTRY_INTS];
+
+    /**
+     * Visits every section reachable from the camera, including the camera's own. Returns the
+     * number of sections visited, or -1 without visiting any when the camera is outside the world
+     * or its column is not loaded, in which case the caller should fall back to frustum culling.
+     */
+    public int cull(SectionGraph graph, FrustumIntersection frustum, Vector3f cameraPosition, SectionVisitor visitor) {
+        // Blocks are centered on their coordinates
+        int startX = Math.floorDiv(Block.toBlockCoordinate(cameraPosition.x), SIZE);
+        int startY = Math.floorDiv(Block.toBlockCoordinate(cameraPosition.y), SIZE);
+        int startZ = Math.floorDiv(Block.toBlockCoordinate(cameraPosition.z), SIZE);
+        if (startY < 0 || startY >= Chunk.SECTIONS || !graph.isColumnLoaded(startX, startZ)) {
+            return -1;
+        }
+
+        visited.clear();
+        visited.add(sectionKey(startX, startY, startZ));
+        int head = 0;
+        int tail = push(0, startX, startY, startZ, -1, 0);
+        while (head < tail) {
+            int x = queue[head];
+            int y = queue[head + 1];
+            int z = queue[head + 2];
+            int from = queue[head + 3];
+            int directions = queue[head + 4];
+            head += ENTRY_INTS;
+            visitor.visit(x, y, z);
+
+            long connectivity = graph.getConnectivity(x, y, z);
+            for (int face = 0; face < 6; face++) {
+                // Faces come in opposite pairs, 0 and 1, 2 and 3, 4 and 5
+                int opposite = face ^ 1;
+                if ((directions & (1 << opposite)) != 0
+                        || (from >= 0 && !SectionConnectivity.connects(connectivity, from, face))) {
+                    continue;
+                }
+                int axis = ChunkMesher.FACE_AXIS[face];
+                int dir = ChunkMesher.FACE_DIRECTION[face];
+                int nx = x + (axis == 0 ? dir : 0);
+                int ny = y + (axis == 1 ? dir : 0);
+                int nz = z + (axis == 2 ? dir : 0);
+                if (ny < 0 || ny >= Chunk.SECTIONS || !graph.isColumnLoaded(nx, nz)
+                        || !isInFrustum(frustum, nx, ny, nz) || !visited.add(sectionKey(nx, ny, nz))) {
+                    continue;
+                }
+                tail = push(tail, nx, ny, nz, opposite, directions | (1 << face));
+            }
+        }
+        return visited.size();
+    }
+
+    private int push(int tail, int x, int y, int z, int from, int directions) {
+        if (tail + ENTRY_INTS > queue.length) {
+            queue = Arrays.copyOf(queue, queue.length * 2);
+        }
+        queue[tail] = x;
+        queue[tail + 1] = y;
+        queue[tail + 2] = z;
+        queue[tail + 3] = from;
+        queue[tail + 4] = directions;
+        return tail + ENTRY_INTS;
+    }
+
+    private static boolean isInFrustum(FrustumIntersection frustum, int chunkX, int sectionY, int chunkZ) {
+        float minX = chunkX * SIZE - 0.5f;
+        float minY = sectionY * SIZE - 0.5f;
+        float minZ = chunkZ * SIZE - 0.5f;
+        return frustum.testAab(minX, minY, minZ, minX + SIZE, minY + SIZE, minZ + SIZE);
+    }
+
+    // Chunk coordinates stay far below 2^24, section indices below 2^16 (see Chunk.MAX_SECTIONS)
+    private static long sectionKey(int chunkX, int sectionY, int chunkZ) {
+        return ((long) (chunkX & 0xFFFFFF) << 40) | ((long) (chunkZ & 0xFFFFFF) << 16) | sectionY;
+    }
+
+    /**
+     * Open-addressing set of section keys, reused every frame. A slot is taken only when its stamp
+     * matches the current one, so clearing is a single increment and the fill allocates nothing
+     * once the table has grown to fit the view.
+     */
+    private static class SectionSet {
+        private long[] keys = new long[1024];
+        private int[] stamps = new int[1024];
+        private int stamp = 1;
+        private int size;
+
+        void clear() {
+            size = 0;
+            if (++stamp == 0) {
+                // Wrapped around, stale stamps could match again
+                Arrays.fill(stamps, 0);
+                stamp = 1;
+            }
+        }
+
+        // Returns false if the key was already in the set
+        boolean add(long key) {
+            // Keep at least half the slots free so probe runs stay short
+            if ((size + 1) * 2 > keys.length) {
+                resize(keys.length * 2);
+            }
+            int mask = keys.length - 1;
+            int slot = slot(key, mask);
+            while (stamps[slot] == stamp) {
+                if (keys[slot] == key) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            stamps[slot] = stamp;
+            size++;
+            return true;
+        }
+
+        int size() {
+            return size;
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = keys;
+            int[] oldStamps = stamps;
+            keys = new long[capacity];
+            stamps = new int[capacity];
+            int mask = capacity - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldStamps[i] == stamp) {
+                    int slot = slot(oldKeys[i], mask);
+                    while (stamps[slot] == stamp) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    stamps[slot] = stamp;
+                }
+            }
+        }
+
+        // Fibonacci hashing, as in ChunkMap
+        private static int slot(long key, int mask) {
+            return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package game.world;
+
+import game.renderer.MeshBuilder;
+
+/**
+ * Emits one quad for every visible block face.
+ */
+public class PerFaceMesher implements ChunkMesher {
+    @Override
+    public void mesh(ChunkSnapshot chunk, MeshBuilder meshData) {
+        int cells = chunk.getSize();
+        int scale = chunk.getScale();
+        for (int x = 0; x < cells; x++) {
+            for (int y = 0; y < cells; y++) {
+                for (int z = 0; z < cells; z++) {
+                    byte blockType = chunk.getBlock(x, y, z);
+                    if (blockType == Block.AIR) continue;
+
+                    // Only add a face if the adjacent block is transparent
+                    for (int face = 0; face < 6; face++) {
+                        int axis = FACE_AXIS[face];
+                        int dir = FACE_DIRECTION[face];
+                        byte neighbor = chunk.getBlock(
+                            x + (axis == 0 ? dir : 0),
+                            y + (axis == 1 ? dir : 0),
+                            z + (axis == 2 ? dir : 0)
+                        );
+                        if (Block.isTransparent(neighbor)) {
+                            ChunkMesher.addFace(meshData, blockType, face, x * scale, y * scale, z * scale, scale, scale, scale);
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package game.world;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Stores the payloads of REGION_SIZE x REGION_SIZE chunks in one memory-mapped file.
+ *
+ * The file starts with a magic number, a version and a table holding the sector offset and byte
+ * length of every chunk (offset 0 means absent), followed by the payloads in SECTOR_BYTES sectors.
+ *
+ * Payloads are never overwritten in place. A new payload is appended and written out before its
+ * table entry switches over, so a crash mid-write leaves the previous copy in use. Sectors left
+ * behind are reclaimed by compact(), which packs the live payloads behind the header the same way.
+ */
+public class RegionFile {
+    public static final int REGION_SIZE = 32;
+    public static final int MAGIC = 0x4D435247; // "MCRG"
+    public static final int VERSION = 1;
+
+    private static final int CHUNKS = REGION_SIZE * REGION_SIZE;
+    private static final int SECTOR_BYTES = 64;
+    private static final int TABLE_OFFSET = 8;
+    private static final int HEADER_SECTORS = sectorsFor(TABLE_OFFSET + CHUNKS * 8);
+    // Compact once the file holds this many unused sectors for every used one
+    private static final float MAX_WASTE_RATIO = 1.0f;
+
+    private final Path path;
+    private final int[] offsets;
+    private final int[] lengths;
+    private final FileChannel channel;
+    private MappedByteBuffer map;
+    private int usedSectors;
+    private int liveSectors;
+
+    public RegionFile(Path path) throws IOException {
+        this.path = path;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        offsets = new int[CHUNKS];
+        lengths = new int[CHUNKS];
+
+        boolean isNew = channel.size() == 0;
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(channel.size(), (long) HEADER_SECTORS * SECTOR_BYTES));
+        usedSectors = HEADER_SECTORS;
+
+        if (isNew) {
+            map.putInt(0, MAGIC);
+            map.putInt(4, VERSION);
+            return;
+        }
+        if (map.getInt(0) != MAGIC) {
+            throw new IOException("Not a region file: " + path);
+        }
+        if (map.getInt(4) != VERSION) {
+            throw new IOException("Unsupported region file version " + map.getInt(4) + ": " + path);
+        }
+        for (int i = 0; i < CHUNKS; i++) {
+            long entry = map.getLong(TABLE_OFFSET + i * 8);
+            offsets[i] = (int) (entry >>> 32);
+            lengths[i] = (int) entry;
+            if (offsets[i] != 0) {
+                usedSectors = Math.max(usedSectors, offsets[i] + sectorsFor(lengths[i]));
+                liveSectors += sectorsFor(lengths[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of the payload of the chunk at region-local coordinates, or null if absent.
+     */
+    public synchronized ByteBuffer read(int localX, int localZ) {
+        int index = index(localX, localZ);
+        if (offsets[index] == 0) {
+            return null;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(lengths[index]);
+        ByteBuffer source = map.duplicate();
+        source.position(offsets[index] * SECTOR_BYTES).limit(offsets[index] * SECTOR_BYTES + lengths[index]);
+        payload.put(source).flip();
+        return payload;
+    }
+
+    public synchronized void write(int localX, int localZ, ByteBuffer payload) throws IOException {
+        int index = index(localX, localZ);
+        int length = payload.remaining();
+        int sectors = sectorsFor(length);
+
+        // Always into free sectors past the end, the old copy stays valid until the entry switches
+        int offset = usedSectors;
+        ensureCapacity(offset + sectors);
+        ByteBuffer target = map.duplicate();
+        target.position(offset * SECTOR_BYTES);
+        target.put(payload);
+        // On disk before the table entry that points at it
+        map.force(offset * SECTOR_BYTES, length);
+
+        if (offsets[index] != 0) {
+            liveSectors -= sectorsFor(lengths[index]);
+        }
+        usedSectors = offset + sectors;
+        liveSectors += sectors;
+        setEntry(index, offset, length);
+
+        if (usedSectors - HEADER_SECTORS - liveSectors > liveSectors * MAX_WASTE_RATIO) {
+            // The payload is stored already, failing to reclaim space must not fail the write
+            try {
+                compact();
+            } catch (IOException e) {
+                System.err.println("Could not compact region file " + path + ": " + e.getMessage());
+            }
+        }
+    }
+
+    public synchronized boolean contains(int localX, int localZ) {
+        return offsets[index(localX, localZ)] != 0;
+    }
+
+    /**
+     * Packs every payload behind the header, in file order. The file is never truncated or replaced,
+     * which Windows refuses while it is mapped. Instead the live payloads are first copied past the
+     * end, then back down behind the header, and every table entry only switches to a copy that is
+     * already on disk, so a crash at any point leaves each chunk readable.
+     */
+    public synchronized void compact() throws IOException {
+        Integer[] order = new Integer[CHUNKS];
+        for (int i = 0; i < CHUNKS; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(offsets[a], offsets[b]));
+
+        int live = liveSectors;
+        int end = usedSectors;
+        ensureCapacity(end + live);
+        // The copies past the end leave everything in front of them free for the second pass
+        copyPayloads(order, end);
+        copyPayloads(order, HEADER_SECTORS);
+        usedSectors = HEADER_SECTORS + live;
+    }
+
+    // Copies the live payloads, in the given order, into consecutive sectors from start, which must
+    // not overlap any of them, then points their entries at the copies
+    private void copyPayloads(Integer[] order, int start) {
+        int next = start;
+        for (int index : order) {
+            if (offsets[index] == 0) {
+                continue;
+            }
+            ByteBuffer source = map.duplicate();
+            source.position(offsets[index] * SECTOR_BYTES).limit(offsets[index] * SECTOR_BYTES + lengths[index]);
+            ByteBuffer target = map.duplicate();
+            target.position(next * SECTOR_BYTES);
+            target.put(source);
+            next += sectorsFor(lengths[index]);
+        }
+        map.force();
+
+        next = start;
+        for (int index : order) {
+            if (offsets[index] == 0) {
+                continue;
+            }
+            setEntry(index, next, lengths[index]);
+            next += sectorsFor(lengths[index]);
+        }
+        map.force();
+    }
+
+    public synchronized void flush() {
+        map.force();
+    }
+
+    public synchronized void close() throws IOException {
+        map.force();
+        channel.close();
+    }
+
+    private void setEntry(int index, int offset, int length) {
+        offsets[index] = offset;
+        lengths[index] = length;
+        // One write, so the entry never pairs a new offset with an old length
+        map.putLong(TABLE_OFFSET + index * 8, (long) offset << 32 | (length & 0xFFFFFFFFL));
+    }
+
+    private void ensureCapacity(int sectors) throws IOException {
+        long required = (long) sectors * SECTOR_BYTES;
+        if (required <= map.capacity()) {
+            return;
+        }
+        // Mapping past the end grows the file, double to keep remaps rare
+        map.force();
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(required, map.capacity() * 2L));
+    }
+
+    private static int index(int localX, int localZ) {
+        return localZ * REGION_SIZE + localX;
+    }
+
+    private static int sectorsFor(int bytes) {
+        return (bytes + SECTOR_BYTES - 1) / SECTOR_BYTES;
+    }
+}
@@ -0,0 +1,99 @@
+package game.world;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Chunk payload storage backed by region files, opened on first use and kept open.
+ */
+public class RegionStore {
+    private static final int REGION_SIZE = RegionFile.REGION_SIZE;
+
+    private final Path directory;
+    private final Map<Long, RegionFile> regions;
+
+    public RegionStore(Path directory) {
+        this.directory = directory;
+        this.regions = new HashMap<>();
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not create region directory", e);
+        }
+    }
+
+    /**
+     * Returns the payload of the chunk, or null if it was never stored.
+     */
+    public ByteBuffer read(int chunkX, int chunkZ) throws IOException {
+        RegionFile region = getRegion(chunkX, chunkZ, false);
+        if (region == null) {
+            return null;
+        }
+        return region.read(Math.floorMod(chunkX, REGION_SIZE), Math.floorMod(chunkZ, REGION_SIZE));
+    }
+
+    public void write(int chunkX, int chunkZ, ByteBuffer payload) throws IOException {
+        RegionFile region = getRegion(chunkX, chunkZ, true);
+        region.write(Math.floorMod(chunkX, REGION_SIZE), Math.floorMod(chunkZ, REGION_SIZE), payload);
+    }
+
+    /**
+     * Returns the keys (see World.getChunkKey) of every stored chunk.
+     */
+    public List<Long> listChunks() throws IOException {
+        List<Long> chunks = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "region_*.dat")) {
+            for (Path path : files) {
+                String[] parts = path.getFileName().toString().replace(".dat", "").split("_");
+                int regionX = Integer.parseInt(parts[1]);
+                int regionZ = Integer.parseInt(parts[2]);
+                RegionFile region = getRegion(regionX * REGION_SIZE, regionZ * REGION_SIZE, true);
+                for (int localX = 0; localX < REGION_SIZE; localX++) {
+                    for (int localZ = 0; localZ < REGION_SIZE; localZ++) {
+                        if (region.contains(localX, localZ)) {
+                            chunks.add(World.getChunkKey(regionX * REGION_SIZE + localX, regionZ * REGION_SIZE + localZ));
+                        }
+                    }
+                }
+            }
+        }
+        return chunks;
+    }
+
+    public synchronized void flush() {
+        for (RegionFile region : regions.values()) {
+            region.flush();
+        }
+    }
+
+    public synchronized void close() throws IOException {
+        for (RegionFile region : regions.values()) {
+            region.close();
+        }
+        regions.clear();
+    }
+
+    private synchronized RegionFile getRegion(int chunkX, int chunkZ, boolean create) throws IOException {
+        int regionX = Math.floorDiv(chunkX, REGION_SIZE);
+        int regionZ = Math.floorDiv(chunkZ, REGION_SIZE);
+        long key = World.getChunkKey(regionX, regionZ);
+        RegionFile region = regions.get(key);
+        if (region == null) {
+            Path path = directory.resolve(String.format("region_%d_%d.dat", regionX, regionZ));
+            if (!create && !Files.exists(path)) {
+                return null;
+            }
+            region = new RegionFile(path);
+            regions.put(key, region);
+        }
+        return region;
+    }
+}
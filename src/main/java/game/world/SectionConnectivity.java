@@ -0,0 +1,102 @@
+package game.world;
+
+/**
+ * Which faces of a chunk section can see each other through it, for occlusion culling.
+ *
+ * Stored as a bit set over face pairs, bit from * 6 + to, with faces numbered as in ChunkMesher.
+ * Two faces are connected when one region of transparent blocks inside the section touches both.
+ */
+public final class SectionConnectivity {
+    // Every face sees every other, as through an all-air section
+    public static final long ALL = -1L;
+
+    private static final int SIZE = Chunk.SIZE;
+
+    private SectionConnectivity() {
+    }
+
+    /**
+     * Flood fills the transparent blocks of a full-resolution snapshot and returns the connected
+     * face pairs.
+     */
+    public static long compute(ChunkSnapshot snapshot) {
+        if (snapshot.getScale() != 1) {
+            throw new IllegalArgumentException("Connectivity needs a full-resolution snapshot");
+        }
+        boolean[] filled = new boolean[SIZE * SIZE * SIZE];
+        int[] stack = new int[SIZE * SIZE * SIZE];
+        long connectivity = 0;
+
+        for (int start = 0; start < filled.length; start++) {
+            if (filled[start] || !isTransparent(snapshot, start)) {
+                continue;
+            }
+            // Faces touched by the region reachable from start
+            int faces = 0;
+            int size = 0;
+            stack[size++] = start;
+            filled[start] = true;
+            while (size > 0) {
+                int index = stack[--size];
+                int x = index & (SIZE - 1);
+                int z = (index >> 4) & (SIZE - 1);
+                int y = index >> 8;
+                faces |= borderFaces(x, y, z);
+
+                for (int face = 0; face < 6; face++) {
+                    int axis = ChunkMesher.FACE_AXIS[face];
+                    int dir = ChunkMesher.FACE_DIRECTION[face];
+                    int nx = x + (axis == 0 ? dir : 0);
+                    int ny = y + (axis == 1 ? dir : 0);
+                    int nz = z + (axis == 2 ? dir : 0);
+                    if (nx < 0 || nx >= SIZE || ny < 0 || ny >= SIZE || nz < 0 || nz >= SIZE) {
+                        continue;
+                    }
+                    int neighbor = BlockStorage.index(nx, ny, nz);
+                    if (!filled[neighbor] && isTransparent(snapshot, neighbor)) {
+                        filled[neighbor] = true;
+                        stack[size++] = neighbor;
+                    }
+                }
+            }
+            connectivity |= pairs(faces);
+        }
+        return connectivity;
+    }
+
+    public static boolean connects(long connectivity, int from, int to) {
+        return (connectivity & (1L << (from * 6 + to))) != 0;
+    }
+
+    private static boolean isTransparent(ChunkSnapshot snapshot, int index) {
+        return Block.isTransparent(snapshot.getBlock(index & (SIZE - 1), index >> 8, (index >> 4) & (SIZE - 1)));
+    }
+
+    // Faces of the section the block at x, y, z lies against
+    private static int borderFaces(int x, int y, int z) {
+        int faces = 0;
+        for (int face = 0; face < 6; face++) {
+            int axis = ChunkMesher.FACE_AXIS[face];
+            int coordinate = axis == 0 ? x : axis == 1 ? y : z;
+            if (coordinate == (ChunkMesher.FACE_DIRECTION[face] > 0 ? SIZE - 1 : 0)) {
+                faces |= 1 << face;
+            }
+        }
+        return faces;
+    }
+
+    private static long pairs(int faces) {
+        long pairs = 0;
+        for (int from = 0; from < 6; from++) {
+            if ((faces & (1 << from)) == 0) {
+                continue;
+            }
+            for (int to = 0; to < 6; to++) {
+                if ((faces & (1 << to)) != 0) {
+                    pairs |= 1L << (from * 6 + to);
+                }
+            }
+        }
+        return pairs;
+    }
+}
@@ -0,0 +1,15 @@
+package game.world;
+
+/**
+ * Produces the blocks of chunks that have never been saved. Implementations are called from
+ * several loader threads at once, so they must be thread-safe, and must return the same blocks
+ * for the same coordinates whichever thread asks and in whatever order.
+ */
+public interface TerrainGenerator {
+    Chunk generate(int chunkX, int chunkZ);
+
+    /**
+     * Returns the y of the topmost solid block generated at the given block column.
+     */
+    int getSurfaceHeight(int x, int z);
+}
@@ -0,0 +1,149 @@
+package game.world;
+
+import org.joml.Vector3f;
+
+/**
+ * Finds the first solid block along a ray by stepping from block to block (Amanatides and Woo),
+ * so every block the ray passes through is tested exactly once, corners included.
+ *
+ * One instance is reused for every cast and holds the result of the last one, casting allocates
+ * nothing. Blocks are centered on their integer coordinates, block x spans x - 0.5 to x + 0.5.
+ */
+public class VoxelRaycast {
+    private int x;
+    private int y;
+    private int z;
+    private int normalX;
+    private int normalY;
+    private int normalZ;
+    private float distance;
+    private byte block;
+
+    /**
+     * Casts a ray from origin along direction, which need not be normalized, for up to maxDistance
+     * blocks. Returns true and keeps the hit if a solid block was found.
+     */
+    public boolean cast(World world, Vector3f origin, Vector3f direction, float maxDistance) {
+        float length = direction.length();
+        if (length == 0) {
+            return false;
+        }
+        float dx = direction.x / length;
+        float dy = direction.y / length;
+        float dz = direction.z / length;
+        // Shift by half a block so block boundaries fall on whole numbers
+        float ox = origin.x + 0.5f;
+        float oy = origin.y + 0.5f;
+        float oz = origin.z + 0.5f;
+
+        int bx = Block.toBlockCoordinate(origin.x);
+        int by = Block.toBlockCoordinate(origin.y);
+        int bz = Block.toBlockCoordinate(origin.z);
+        int stepX = dx > 0 ? 1 : dx < 0 ? -1 : 0;
+        int stepY = dy > 0 ? 1 : dy < 0 ? -1 : 0;
+        int stepZ = dz > 0 ? 1 : dz < 0 ? -1 : 0;
+        // Distance along the ray to cross one block on each axis, and to the next boundary
+        float deltaX = stepX != 0 ? Math.abs(1 / dx) : Float.POSITIVE_INFINITY;
+        float deltaY = stepY != 0 ? Math.abs(1 / dy) : Float.POSITIVE_INFINITY;
+        float deltaZ = stepZ != 0 ? Math.abs(1 / dz) : Float.POSITIVE_INFINITY;
+        float nextX = boundaryDistance(ox, bx, stepX, deltaX);
+        float nextY = boundaryDistance(oy, by, stepY, deltaY);
+        float nextZ = boundaryDistance(oz, bz, stepZ, deltaZ);
+
+        // Starting inside a solid block hits it with no face
+        int nx = 0;
+        int ny = 0;
+        int nz = 0;
+        float t = 0;
+        while (t <= maxDistance) {
+            byte hitBlock = world.getBlock(bx, by, bz);
+            if (!Block.isTransparent(hitBlock)) {
+                x = bx;
+                y = by;
+                z = bz;
+                normalX = nx;
+                normalY = ny;
+                normalZ = nz;
+                distance = t;
+                block = hitBlock;
+                return true;
+            }
+
+            if (nextX < nextY && nextX < nextZ) {
+                bx += stepX;
+                t = nextX;
+                nextX += deltaX;
+                nx = -stepX;
+                ny = 0;
+                nz = 0;
+            } else if (nextY < nextZ) {
+                by += stepY;
+                t = nextY;
+                nextY += deltaY;
+                nx = 0;
+                ny = -stepY;
+                nz = 0;
+            } else {
+                bz += stepZ;
+                t = nextZ;
+                nextZ += deltaZ;
+                nx = 0;
+                ny = 0;
+                nz = -stepZ;
+            }
+        }
+        return false;
+    }
+
+    private static float boundaryDistance(float origin, int block, int step, float delta) {
+        if (step > 0) {
+            return (block + 1 - origin) * delta;
+        } else if (step < 0) {
+            return (origin - block) * delta;
+        }
+        return Float.POSITIVE_INFINITY;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public int getZ() {
+        return z;
+    }
+
+    /**
+     * Outward normal of the face the ray entered the hit block through, all zero if the ray
+     * started inside it.
+     */
+    public int getNormalX() {
+        return normalX;
+    }
+
+    public int getNormalY() {
+        return normalY;
+    }
+
+    public int getNormalZ() {
+        return normalZ;
+    }
+
+    public boolean hasFace() {
+        return normalX != 0 || normalY != 0 || normalZ != 0;
+    }
+
+    /**
+     * Distance from the origin to where the ray entered the hit block.
+     */
+    public float getDistance() {
+        return distance;
+    }
+
+    public byte getBlock() {
+        return block;
+    }
+}
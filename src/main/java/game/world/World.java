@@ -1,107 +1,543 @@
 package game.world;
 
+import game.renderer.ChunkDrawBatch;
+import game.renderer.ChunkMesh;
 import game.renderer.ChunkRenderer;
+import game.renderer.VertexArena;
+import game.renderer.Shader;
+import org.joml.FrustumIntersection;
+import org.joml.Matrix4f;
 import org.joml.Vector3f;
+import org.joml.Vector3i;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
-public class World {
-    private Map<Long, Chunk> chunks;
-    private Map<Long, ChunkRenderer> chunkRenderers;
+public class World implements ChunkProvider, OcclusionCuller.SectionGraph {
+    // Finished meshes uploaded to the GPU per frame, the rest wait for the next frame
+    private static final int MAX_UPLOADS_PER_FRAME = 8;
+    // Sections snapshotted and sent to the meshing workers per frame, the rest stay dirty until
+    // the next one. Twice the upload budget keeps the workers busy without piling up results.
+    private static final int MAX_SUBMITS_PER_FRAME = 2 * MAX_UPLOADS_PER_FRAME;
+    // Times a section is resubmitted after its meshing failed before it waits for the next edit
+    private static final int MAX_MESH_RETRIES = 3;
+    // Columns this many chunks from the viewer are meshed at half resolution, and at a quarter from
+    // twice as far, override with -DlodDistance=<chunks>, 0 meshes everything at full resolution
+    private static final int LOD_DISTANCE = Integer.getInteger("lodDistance", 6);
+    private static final int MAX_LOD_LEVEL = 2;
+    // A column keeps its level until the viewer is this many chunks past a threshold, so moving
+    // back and forth across one does not remesh the column every time
+    private static final float LOD_HYSTERESIS = 0.5f;
+    // Skip sections hidden behind terrain, -DocclusionCulling=false to only cull against the frustum
+    private static final boolean OCCLUSION_CULLING = Boolean.parseBoolean(System.getProperty("occlusionCulling", "true"));
+    
+    private ChunkMap chunks;
+    // Changes whenever a chunk is added or unloaded, so block cursors know to look chunks up again
+    private int chunkGeneration;
+    // Most lookups land in the same chunk as the one before
+    private final BlockCursor blockCursor = new BlockCursor(this);
+    // One renderer per section of each chunk column, created when the section is first meshed
+    private Map<Long, ChunkRenderer[]> chunkRenderers;
+    // Vertex buffer and VAO shared by every section renderer
+    private final VertexArena vertexArena = new VertexArena();
+    // Multi-draw path, null to draw every section with its own call
+    private ChunkDrawBatch drawBatch;
+    // Set by cull(), the first render() afterwards rebuilds the batch for the frame
+    private boolean batchStale;
+    private ChunkMesher mesher;
+    private ChunkMeshPipeline meshPipeline;
+    private List<Chunk> dirtyChunks;
+    private long seed;
+    private TerrainGenerator generator;
+    private final FrustumIntersection frustum = new FrustumIntersection();
+    private final OcclusionCuller occlusionCuller = new OcclusionCuller();
+    private final OcclusionCuller.SectionVisitor visibleSectionCollector = this::addVisibleSection;
+    private final Vector3f cullPosition = new Vector3f();
+    private final Matrix4f viewProjection = new Matrix4f();
+    private final Matrix4f cameraViewProjection = new Matrix4f();
+    // Sections drawn by render() this frame, chosen by cull()
+    private final List<ChunkRenderer> visibleRenderers = new ArrayList<>();
+    private int culledSections;
+    // Draw calls and vertices submitted by render() since the last cull()
+    private int drawCalls;
+    private long drawnVertices;
     
     public World() {
-        chunks = new HashMap<>();
-        chunkRenderers = new HashMap<>();
-        generateInitialChunks();
+        this(new Random().nextLong());
     }
     
-    private void generateInitialChunks() {
-        // Generate a 3x3 chunk area
-        for (int x = -1; x <= 1; x++) {
-            for (int z = -1; z <= 1; z++) {
-                generateChunk(x, z);
-            }
-        }
+    public World(long seed) {
+        setSeed(seed);
+        chunks = new ChunkMap();
+        chunkRenderers = new HashMap<>();
+        mesher = new GreedyMesher();
+        meshPipeline = new ChunkMeshPipeline();
+        dirtyChunks = new ArrayList<>();
     }
     
-    private void generateChunk(int x, int z) {
-        long key = getChunkKey(x, z);
-        Chunk chunk = new Chunk(x, z);
-        chunks.put(key, chunk);
-        
-        ChunkRenderer renderer = new ChunkRenderer();
-        renderer.init(chunk);
-        chunkRenderers.put(key, renderer);
+    /**
+     * Returns the block at world block coordinates, air where no chunk is loaded. Must be called
+     * from the GL thread, like every other method that reads loaded chunks.
+     */
+    public byte getBlock(int x, int y, int z) {
+        return blockCursor.getBlock(x, y, z);
     }
     
-    public byte getBlock(int x, int y, int z) {
+    public void setBlock(int x, int y, int z, byte blockType) {
         int chunkX = Math.floorDiv(x, Chunk.SIZE);
         int chunkZ = Math.floorDiv(z, Chunk.SIZE);
         
         Chunk chunk = getChunk(chunkX, chunkZ);
-        if (chunk == null) {
-            return Block.AIR;
+        if (chunk == null || y < 0 || y >= Chunk.HEIGHT) {
+            return;
         }
         
         int localX = Math.floorMod(x, Chunk.SIZE);
+        int localY = y & (Chunk.SIZE - 1);
         int localZ = Math.floorMod(z, Chunk.SIZE);
-        return chunk.getBlock(localX, y, localZ);
+        int sectionY = y / Chunk.SIZE;
+        // Marks the section dirty, its mesh is rebuilt on the next update
+        chunk.setBlock(localX, y, localZ, blockType);
+        
+        // A block on the border also changes which faces the neighboring section shows
+        if (localX == 0) {
+            markDirty(getChunk(chunkX - 1, chunkZ), sectionY);
+        } else if (localX == Chunk.SIZE - 1) {
+            markDirty(getChunk(chunkX + 1, chunkZ), sectionY);
+        }
+        if (localY == 0) {
+            chunk.markSectionDirty(sectionY - 1);
+        } else if (localY == Chunk.SIZE - 1) {
+            chunk.markSectionDirty(sectionY + 1);
+        }
+        if (localZ == 0) {
+            markDirty(getChunk(chunkX, chunkZ - 1), sectionY);
+        } else if (localZ == Chunk.SIZE - 1) {
+            markDirty(getChunk(chunkX, chunkZ + 1), sectionY);
+        }
     }
     
-    public void setBlock(int x, int y, int z, byte blockType) {
-        int chunkX = Math.floorDiv(x, Chunk.SIZE);
-        int chunkZ = Math.floorDiv(z, Chunk.SIZE);
-        
-        Chunk chunk = getChunk(chunkX, chunkZ);
+    private void markDirty(Chunk chunk, int sectionY) {
+        if (chunk != null) {
+            chunk.markSectionDirty(sectionY);
+        }
+    }
+    
+    // Only neighbor sections with blocks on the shared border show or hide faces toward the column
+    private void markNeighborsDirty(int x, int z) {
+        markBorderDirty(getChunk(x - 1, z), 0, Chunk.SIZE - 1);
+        markBorderDirty(getChunk(x + 1, z), 0, 0);
+        markBorderDirty(getChunk(x, z - 1), 2, Chunk.SIZE - 1);
+        markBorderDirty(getChunk(x, z + 1), 2, 0);
+    }
+    
+    private void markBorderDirty(Chunk chunk, int axis, int coordinate) {
         if (chunk == null) {
             return;
         }
+        for (int sectionY = 0; sectionY < Chunk.SECTIONS; sectionY++) {
+            ChunkSection section = chunk.getSection(sectionY);
+            if (section != null && !section.isDirty() && section.hasBlocksInPlane(axis, coordinate)) {
+                chunk.markSectionDirty(sectionY);
+            }
+        }
+    }
+    
+    /**
+     * Sends dirty sections to the meshing workers, nearest to the viewer first, and uploads finished
+     * meshes, both within a per-frame budget. Must be called once per frame from the GL thread.
+     */
+    public void update(Vector3f viewerPosition) {
+        float viewerX = viewerPosition.x / Chunk.SIZE - 0.5f;
+        float viewerZ = viewerPosition.z / Chunk.SIZE - 0.5f;
+        for (Chunk chunk : chunks) {
+            updateLodLevel(chunk, viewerX, viewerZ);
+            if (chunk.isDirty()) {
+                dirtyChunks.add(chunk);
+            }
+        }
+        if (!dirtyChunks.isEmpty()) {
+            dirtyChunks.sort(Comparator.comparingDouble(chunk -> {
+                float dx = chunk.getX() - viewerX;
+                float dz = chunk.getZ() - viewerZ;
+                return dx * dx + dz * dz;
+            }));
+            
+            // Snapshot dirty sections, the workers never touch live chunk data
+            int submits = 0;
+            for (Chunk chunk : dirtyChunks) {
+                if (submits >= MAX_SUBMITS_PER_FRAME) {
+                    break;
+                }
+                long key = getChunkKey(chunk.getX(), chunk.getZ());
+                ChunkRenderer[] renderers = chunkRenderers.computeIfAbsent(key, k -> new ChunkRenderer[Chunk.SECTIONS]);
+                int scale = 1 << Math.max(0, chunk.getLodLevel());
+                boolean submittedAll = true;
+                for (int sectionY = 0; sectionY < Chunk.SECTIONS; sectionY++) {
+                    ChunkSection section = chunk.getSection(sectionY);
+                    if (section == null || !section.isDirty()) {
+                        continue;
+                    }
+                    if (renderers[sectionY] == null) {
+                        renderers[sectionY] = createRenderer(chunk.getX(), sectionY, chunk.getZ());
+                    }
+                    // A section with a mesh still in flight stays dirty and is snapshotted again
+                    // once that mesh is uploaded, so edits in between are never lost
+                    if (submits >= MAX_SUBMITS_PER_FRAME || renderers[sectionY].isMeshPending()) {
+                        submittedAll = false;
+                        continue;
+                    }
+                    ChunkSnapshot snapshot = new ChunkSnapshot(chunk, sectionY, this);
+                    meshPipeline.submit(chunk, snapshot, mesher, renderers[sectionY].nextRevision(), scale);
+                    section.setDirty(false);
+                    submits++;
+                }
+                if (submittedAll) {
+                    chunk.setDirty(false);
+                }
+            }
+            dirtyChunks.clear();
+        }
         
-        int localX = Math.floorMod(x, Chunk.SIZE);
-        int localZ = Math.floorMod(z, Chunk.SIZE);
-        chunk.setBlock(localX, y, localZ, blockType);
+        // Upload finished meshes within the per-frame budget
+        int uploads = 0;
+        ChunkMeshPipeline.Result result;
+        while (uploads < MAX_UPLOADS_PER_FRAME && (result = meshPipeline.poll()) != null) {
+            Chunk chunk = result.getChunk();
+            long key = getChunkKey(chunk.getX(), chunk.getZ());
+            ChunkRenderer[] renderers = chunkRenderers.get(key);
+            ChunkRenderer renderer = renderers != null ? renderers[result.getSectionY()] : null;
+            
+            ChunkMesh mesh = result.getMesh();
+            // Drop meshes of unloaded chunks and meshes older than the one already uploaded
+            if (renderer == null || chunks.get(chunk.getX(), chunk.getZ()) != chunk || result.getRevision() <= renderer.getUploadedRevision()) {
+                if (mesh != null) {
+                    mesh.free();
+                }
+                continue;
+            }
+            renderer.setUploadedRevision(result.getRevision());
+            if (mesh == null) {
+                // The old mesh stays, mesh the section again so the change still shows up
+                if (renderer.addFailedMesh() <= MAX_MESH_RETRIES) {
+                    chunk.markSectionDirty(result.getSectionY());
+                } else {
+                    System.err.println("Giving up meshing section " + result.getSectionY() + " of chunk "
+                        + chunk.getX() + ", " + chunk.getZ() + " until it changes again");
+                }
+                continue;
+            }
+            renderer.upload(mesh);
+            // The vertices are on the GPU now
+            mesh.free();
+            renderer.setConnectivity(result.getConnectivity());
+            renderer.resetFailedMeshes();
+            uploads++;
+        }
+    }
+    
+    // Remeshes the column when its distance from the viewer, in chunks, calls for another level.
+    // The old mesh is drawn until the new one is uploaded, so switching never leaves a hole.
+    private void updateLodLevel(Chunk chunk, float viewerX, float viewerZ) {
+        float dx = chunk.getX() - viewerX;
+        float dz = chunk.getZ() - viewerZ;
+        float distance = (float) Math.sqrt(dx * dx + dz * dz);
+        int current = chunk.getLodLevel();
+        int level = lodLevelFor(distance);
+        if (current >= 0 && level != current) {
+            float min = current * LOD_DISTANCE - LOD_HYSTERESIS;
+            float max = current == MAX_LOD_LEVEL ? Float.MAX_VALUE : (current + 1) * LOD_DISTANCE + LOD_HYSTERESIS;
+            if (distance >= min && distance < max) {
+                return;
+            }
+        }
+        if (level != current) {
+            chunk.setLodLevel(level);
+            // New columns are dirty already
+            chunk.setDirty(true);
+        }
+    }
+    
+    private static int lodLevelFor(float distance) {
+        if (LOD_DISTANCE <= 0) {
+            return 0;
+        }
+        return Math.min(MAX_LOD_LEVEL, (int) (distance / LOD_DISTANCE));
+    }
+    
+    private ChunkRenderer createRenderer(int chunkX, int sectionY, int chunkZ) {
+        Vector3i origin = new Vector3i(chunkX * Chunk.SIZE, sectionY * Chunk.SIZE, chunkZ * Chunk.SIZE);
+        return new ChunkRenderer(origin, Chunk.SIZE, vertexArena);
+    }
+    
+    /**
+     * Picks the sections inside the view frustum. Call once per frame before rendering, every
+     * render() call that frame then draws the same sections. Sections hidden behind terrain are
+     * skipped by flood filling from the camera, see OcclusionCuller. Otherwise, when the draw batch
+     * culls on the GPU, only whole columns are tested here and the sections are left to the GPU.
+     */
+    public void cull(Matrix4f projectionMatrix, Matrix4f viewMatrix) {
+        frustum.set(projectionMatrix.mul(viewMatrix, viewProjection));
+        visibleRenderers.clear();
+        culledSections = 0;
+        drawCalls = 0;
+        drawnVertices = 0;
+        batchStale = true;
+        if (OCCLUSION_CULLING && cullOccluded(viewMatrix)) {
+            return;
+        }
+        boolean testSections = drawBatch == null || !drawBatch.isGpuCulling();
         
-        // Update chunk mesh
-        ChunkRenderer renderer = chunkRenderers.get(getChunkKey(chunkX, chunkZ));
-        if (renderer != null) {
-            renderer.cleanup();
-            renderer.init(chunk);
+        for (Map.Entry<Long, ChunkRenderer[]> entry : chunkRenderers.entrySet()) {
+            ChunkRenderer[] renderers = entry.getValue();
+            long key = entry.getKey();
+            float minX = (int) (key >> 32) * Chunk.SIZE - 0.5f;
+            float minZ = (int) key * Chunk.SIZE - 0.5f;
+            // Test the whole column first, most columns are entirely in or out of view
+            int result = frustum.intersectAab(minX, -0.5f, minZ, minX + Chunk.SIZE, Chunk.HEIGHT - 0.5f, minZ + Chunk.SIZE);
+            for (ChunkRenderer renderer : renderers) {
+                if (renderer == null || renderer.isEmpty()) {
+                    continue;
+                }
+                if (result == FrustumIntersection.INSIDE
+                        || (result == FrustumIntersection.INTERSECT && (!testSections || renderer.isInFrustum(frustum)))) {
+                    visibleRenderers.add(renderer);
+                } else {
+                    culledSections++;
+                }
+            }
+        }
+    }
+    
+    // Collects the sections reachable from the camera, false if the camera is somewhere the flood
+    // fill cannot start from
+    private boolean cullOccluded(Matrix4f viewMatrix) {
+        if (occlusionCuller.cull(this, frustum, viewMatrix.originAffine(cullPosition), visibleSectionCollector) < 0) {
+            return false;
+        }
+        int drawable = 0;
+        for (ChunkRenderer[] renderers : chunkRenderers.values()) {
+            for (ChunkRenderer renderer : renderers) {
+                if (renderer != null && !renderer.isEmpty()) {
+                    drawable++;
+                }
+            }
+        }
+        culledSections = drawable - visibleRenderers.size();
+        return true;
+    }
+    
+    private void addVisibleSection(int chunkX, int sectionY, int chunkZ) {
+        ChunkRenderer[] renderers = chunkRenderers.get(getChunkKey(chunkX, chunkZ));
+        ChunkRenderer renderer = renderers != null ? renderers[sectionY] : null;
+        if (renderer != null && !renderer.isEmpty()) {
+            visibleRenderers.add(renderer);
         }
     }
     
-    public void render() {
-        for (ChunkRenderer renderer : chunkRenderers.values()) {
+    @Override
+    public boolean isColumnLoaded(int chunkX, int chunkZ) {
+        return chunks.contains(chunkX, chunkZ);
+    }
+    
+    @Override
+    public long getConnectivity(int chunkX, int sectionY, int chunkZ) {
+        ChunkRenderer[] renderers = chunkRenderers.get(getChunkKey(chunkX, chunkZ));
+        ChunkRenderer renderer = renderers != null ? renderers[sectionY] : null;
+        // Sections without a renderer are all air or not meshed yet
+        return renderer != null ? renderer.getConnectivity() : SectionConnectivity.ALL;
+    }
+    
+    /**
+     * Draws the sections picked by the last cull(). Sections are placed relative to the camera
+     * through the chunkOffset uniform, so the view matrix must not contain the camera translation.
+     * With a draw batch all sections go out in one multi-draw call instead.
+     */
+    public void render(Shader shader, Vector3f cameraPosition) {
+        if (drawBatch != null) {
+            renderBatch(shader, cameraPosition);
+            return;
+        }
+        // Every section lives in the same arena, one VAO bind covers all draws
+        vertexArena.bind();
+        for (ChunkRenderer renderer : visibleRenderers) {
+            // Subtract in double so positions stay exact however far the camera is from the origin
+            Vector3i origin = renderer.getOrigin();
+            shader.setUniform("chunkOffset",
+                (float) (origin.x - (double) cameraPosition.x),
+                (float) (origin.y - (double) cameraPosition.y),
+                (float) (origin.z - (double) cameraPosition.z));
             renderer.render();
+            drawnVertices += renderer.getVertexCount();
+        }
+        drawCalls += visibleRenderers.size();
+    }
+    
+    private void renderBatch(Shader shader, Vector3f cameraPosition) {
+        if (batchStale) {
+            drawBatch.begin();
+            for (ChunkRenderer renderer : visibleRenderers) {
+                Vector3i origin = renderer.getOrigin();
+                drawBatch.add(renderer,
+                    (float) (origin.x - (double) cameraPosition.x),
+                    (float) (origin.y - (double) cameraPosition.y),
+                    (float) (origin.z - (double) cameraPosition.z));
+            }
+            // The cull shader tests the same camera-relative boxes the vertex shader draws
+            drawBatch.upload(viewProjection.translate(cameraPosition, cameraViewProjection));
+            shader.bind();
+            batchStale = false;
+        }
+        // Offsets come from the batch, the uniform only serves per-section draws
+        shader.setUniform("chunkOffset", 0, 0, 0);
+        drawBatch.draw();
+        drawCalls++;
+        drawnVertices += drawBatch.getVertexCount();
+    }
+    
+    /**
+     * Draws through the given batch from now on, or per section when null. The world takes
+     * ownership and cleans it up.
+     */
+    public void setDrawBatch(ChunkDrawBatch drawBatch) {
+        if (this.drawBatch != null) {
+            this.drawBatch.cleanup();
         }
+        this.drawBatch = drawBatch;
+    }
+    
+    public VertexArena getVertexArena() {
+        return vertexArena;
+    }
+    
+    public boolean isBatched() {
+        return drawBatch != null;
+    }
+    
+    public int getVisibleSections() {
+        return visibleRenderers.size();
+    }
+    
+    public int getCulledSections() {
+        return culledSections;
+    }
+    
+    public int getDrawCalls() {
+        return drawCalls;
+    }
+    
+    public long getDrawnVertices() {
+        return drawnVertices;
     }
     
     public void cleanup() {
-        for (ChunkRenderer renderer : chunkRenderers.values()) {
-            renderer.cleanup();
+        meshPipeline.shutdown();
+        visibleRenderers.clear();
+        for (ChunkRenderer[] renderers : chunkRenderers.values()) {
+            cleanup(renderers);
+        }
+        if (drawBatch != null) {
+            drawBatch.cleanup();
         }
+        vertexArena.cleanup();
     }
     
-    private Chunk getChunk(int x, int z) {
-        return chunks.get(getChunkKey(x, z));
+    private static void cleanup(ChunkRenderer[] renderers) {
+        for (ChunkRenderer renderer : renderers) {
+            if (renderer != null) {
+                renderer.cleanup();
+            }
+        }
+    }
+    
+    @Override
+    public Chunk getChunk(int x, int z) {
+        return chunks.get(x, z);
+    }
+    
+    public boolean isLoaded(int x, int z) {
+        return getChunk(Math.floorDiv(x, Chunk.SIZE), Math.floorDiv(z, Chunk.SIZE)) != null;
+    }
+    
+    static long getChunkKey(int x, int z) {
+        return ChunkMap.key(x, z);
+    }
+    
+    public ChunkMesher getMesher() {
+        return mesher;
+    }
+    
+    public void setMesher(ChunkMesher mesher) {
+        this.mesher = mesher;
+        // Rebuild every chunk with the new mesher
+        for (Chunk chunk : chunks) {
+            chunk.setDirty(true);
+        }
+    }
+    
+    public long getSeed() {
+        return seed;
     }
     
-    private long getChunkKey(int x, int z) {
-        return ((long)x << 32) | (z & 0xFFFFFFFFL);
+    /**
+     * Sets the world seed and switches to noise terrain generated from it.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+        this.generator = new NoiseTerrainGenerator(seed);
     }
     
-    public Map<Long, Chunk> getChunks() {
+    public TerrainGenerator getGenerator() {
+        return generator;
+    }
+    
+    public void setGenerator(TerrainGenerator generator) {
+        this.generator = generator;
+    }
+    
+    /**
+     * Generates the chunk at the given chunk coordinates without adding it to the world.
+     * Safe to call from any thread.
+     */
+    public Chunk generateChunk(int x, int z) {
+        return generator.generate(x, z);
+    }
+    
+    public int getChunkGeneration() {
+        return chunkGeneration;
+    }
+    
+    public ChunkMap getChunks() {
         return chunks;
     }
     
-    public void loadChunk(int x, int z, byte[][][] blocks) {
+    public void addChunk(Chunk chunk) {
+        // New chunks start dirty and are meshed on the next update
+        chunk.setDirty(true);
+        chunks.put(chunk);
+        chunkGeneration++;
+        
+        // The new chunk hides faces along its neighbors' borders
+        markNeighborsDirty(chunk.getX(), chunk.getZ());
+    }
+    
+    public void unloadChunk(int x, int z) {
         long key = getChunkKey(x, z);
-        Chunk chunk = new Chunk(x, z);
-        chunk.setBlocks(blocks);
-        chunks.put(key, chunk);
+        if (chunks.remove(x, z) == null) {
+            return;
+        }
+        chunkGeneration++;
+        
+        ChunkRenderer[] renderers = chunkRenderers.remove(key);
+        if (renderers != null) {
+            cleanup(renderers);
+        }
         
-        ChunkRenderer renderer = new ChunkRenderer();
-        renderer.init(chunk);
-        chunkRenderers.put(key, renderer);
+        // Faces that bordered the removed chunk are exposed again
+        markNeighborsDirty(x, z);
     }
 }
@@ -6,23 +6,44 @@ import game.entity.Player;
 import org.joml.Vector3f;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.HashMap;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class WorldSaveManager {
-    private static final String SAVE_DIR = "saves";
+    // Directory holding one folder per world, -DsaveDir=samples/saves for the bundled sample world
+    private static final String SAVE_DIR = System.getProperty("saveDir", "saves");
     private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
     
     private final String worldName;
     private final Path savePath;
+    private final RegionStore regionStore;
+    // All writes happen on this thread, in the order they were queued
+    private final ExecutorService writer;
+    // Encoded chunks queued for the writer, consulted by reads so they never see stale data
+    private final Map<Long, ByteBuffer> pendingChunks;
     
     public WorldSaveManager(String worldName) {
         this.worldName = worldName;
         this.savePath = Paths.get(SAVE_DIR, worldName);
         createSaveDirectory();
+        this.regionStore = new RegionStore(savePath.resolve("region"));
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "world-saver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pendingChunks = new ConcurrentHashMap<>();
     }
     
     private void createSaveDirectory() {
@@ -33,17 +54,22 @@ public class WorldSaveManager {
         }
     }
     
+    /**
+     * Snapshots the player, the world metadata and every chunk modified since it was last saved, and
+     * hands them to the background writer. Returns without waiting for the writes.
+     */
     public void saveWorld(World world, Player player) {
         // Save player data
         savePlayer(player);
         
-        // Save chunks
-        for (Map.Entry<Long, Chunk> entry : world.getChunks().entrySet()) {
-            saveChunk(entry.getValue());
+        // Save chunks that changed since their last save
+        for (Chunk chunk : world.getChunks()) {
+            saveChunk(chunk);
         }
+        writer.execute(regionStore::flush);
         
         // Save world metadata
-        saveWorldMeta();
+        saveWorldMeta(world);
     }
     
     private void savePlayer(Player player) {
@@ -52,86 +78,225 @@ public class WorldSaveManager {
         data.inventory = player.getInventory();
         
         String json = GSON.toJson(data);
-        Path playerPath = savePath.resolve("player.json");
-        
-        try {
-            Files.write(playerPath, json.getBytes());
-        } catch (IOException e) {
-            throw new RuntimeException("Could not save player data", e);
-        }
+        writeFileAsync(savePath.resolve("player.json"), json, "Could not save player data");
     }
     
-    private void saveChunk(Chunk chunk) {
-        ChunkData data = new ChunkData();
-        data.x = chunk.getX();
-        data.z = chunk.getZ();
-        data.blocks = chunk.getBlocks();
-        
-        String json = GSON.toJson(data);
-        Path chunkPath = savePath.resolve(String.format("chunk_%d_%d.json", chunk.getX(), chunk.getZ()));
-        
-        try {
-            Files.write(chunkPath, json.getBytes());
-        } catch (IOException e) {
-            throw new RuntimeException("Could not save chunk data", e);
+    /**
+     * Queues the chunk for writing if it changed since it was last saved.
+     */
+    public void saveChunk(Chunk chunk) {
+        if (!chunk.isModified()) {
+            return;
         }
+        // Encode now, the chunk may keep changing while the writer is busy
+        ByteBuffer payload = ChunkCodec.encode(chunk);
+        chunk.setModified(false);
+        
+        int x = chunk.getX();
+        int z = chunk.getZ();
+        long key = World.getChunkKey(x, z);
+        pendingChunks.put(key, payload);
+        writer.execute(() -> {
+            try {
+                regionStore.write(x, z, payload.duplicate());
+            } catch (IOException e) {
+                System.err.println("Could not save chunk " + x + ", " + z + ": " + e.getMessage());
+            } finally {
+                pendingChunks.remove(key, payload);
+            }
+        });
     }
     
-    private void saveWorldMeta() {
+    private void saveWorldMeta(World world) {
         WorldMetaData meta = new WorldMetaData();
         meta.name = worldName;
         meta.version = 1;
         meta.lastPlayed = System.currentTimeMillis();
+        meta.seed = world.getSeed();
         
         String json = GSON.toJson(meta);
-        Path metaPath = savePath.resolve("world.json");
-        
-        try {
-            Files.write(metaPath, json.getBytes());
-        } catch (IOException e) {
-            throw new RuntimeException("Could not save world metadata", e);
-        }
+        writeFileAsync(savePath.resolve("world.json"), json, "Could not save world metadata");
+    }
+    
+    // Writes to a temporary file and renames it over the target, so a crash never leaves a torn file
+    private void writeFileAsync(Path path, String contents, String errorMessage) {
+        writer.execute(() -> {
+            Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+            try {
+                Files.write(tempPath, contents.getBytes());
+                Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                System.err.println(errorMessage + ": " + e.getMessage());
+            }
+        });
     }
     
+    /**
+     * Loads the world seed and the player. Chunks are not loaded here, ChunkStreamer reads them around
+     * the player nearest first, so startup does not depend on how large the saved world is. Per-chunk
+     * files left by older versions are moved into the region files first, the streamer only reads
+     * regions and would otherwise generate fresh terrain over them.
+     */
     public void loadWorld(World world, Player player) {
+        if (!listLegacyChunks().isEmpty()) {
+            int converted = convertLegacyChunks();
+            System.out.println("Converted " + converted + " legacy chunk files of " + worldName + " into region files");
+        }
+        
+        // Load world metadata
+        loadWorldMeta(world);
+        
         // Load player data
-        loadPlayer(player);
+        loadPlayer(world, player);
+    }
+    
+    private void loadWorldMeta(World world) {
+        Path metaPath = savePath.resolve("world.json");
+        if (!Files.exists(metaPath)) {
+            return;
+        }
         
-        // Load chunks
         try {
-            Files.list(savePath)
-                .filter(path -> path.toString().startsWith("chunk_"))
-                .forEach(path -> loadChunk(world, path));
+            String json = new String(Files.readAllBytes(metaPath));
+            WorldMetaData meta = GSON.fromJson(json, WorldMetaData.class);
+            // Worlds saved before seeds existed keep the random seed the world started with
+            if (meta.seed != null) {
+                world.setSeed(meta.seed);
+            }
         } catch (IOException e) {
-            throw new RuntimeException("Could not load chunks", e);
+            throw new RuntimeException("Could not load world metadata", e);
         }
     }
     
-    private void loadPlayer(Player player) {
+    private void loadPlayer(World world, Player player) {
         Path playerPath = savePath.resolve("player.json");
         
         try {
             String json = new String(Files.readAllBytes(playerPath));
             PlayerData data = GSON.fromJson(json, PlayerData.class);
             
-            player.setPosition(data.position);
+            // Saves from before the world had a floor can hold a player who fell out of it
+            Vector3f position = data.position;
+            if (!Float.isFinite(position.y) || position.y < 0 || position.y >= Chunk.HEIGHT) {
+                int x = Block.toBlockCoordinate(position.x);
+                int z = Block.toBlockCoordinate(position.z);
+                position.y = world.getGenerator().getSurfaceHeight(x, z) + 1;
+            }
+            player.setPosition(position);
             player.setInventory(data.inventory);
         } catch (IOException e) {
             throw new RuntimeException("Could not load player data", e);
         }
     }
     
-    private void loadChunk(World world, Path path) {
+    /**
+     * Reads the saved chunk at the given chunk coordinates, or returns null if it was never saved.
+     */
+    public Chunk readChunk(int x, int z) {
+        try {
+            ByteBuffer payload = pendingChunks.get(World.getChunkKey(x, z));
+            if (payload != null) {
+                return ChunkCodec.decode(payload.duplicate());
+            }
+            payload = regionStore.read(x, z);
+            return payload != null ? ChunkCodec.decode(payload) : null;
+        } catch (IOException e) {
+            throw new RuntimeException("Could not load chunk data", e);
+        }
+    }
+    
+    public List<Chunk> readAllChunks() {
+        List<Long> keys;
         try {
+            keys = regionStore.listChunks();
+        } catch (IOException e) {
+            throw new RuntimeException("Could not list chunks", e);
+        }
+        
+        // Region reads are cheap copies out of the mapped files, decoding runs in parallel
+        return keys.parallelStream()
+            .map(key -> readChunk((int) (key >> 32), (int) (long) key))
+            .collect(Collectors.toList());
+    }
+    
+    /**
+     * Moves every per-chunk file of this world (binary or legacy JSON) into the region files and
+     * deletes it. Returns the number of chunks converted. Call before anything else is queued, the
+     * region files are written on the calling thread.
+     */
+    public int convertLegacyChunks() {
+        List<Path> legacyChunks = listLegacyChunks();
+        for (Path path : legacyChunks) {
+            try {
+                Chunk chunk = readLegacyChunk(path);
+                regionStore.write(chunk.getX(), chunk.getZ(), ChunkCodec.encode(chunk));
+            } catch (IOException e) {
+                throw new RuntimeException("Could not convert chunk " + path, e);
+            }
+        }
+        // The originals go only once every chunk is safely in the region files
+        regionStore.flush();
+        for (Path path : legacyChunks) {
+            try {
+                Files.delete(path);
+            } catch (IOException e) {
+                throw new RuntimeException("Could not delete converted chunk " + path, e);
+            }
+        }
+        return legacyChunks.size();
+    }
+    
+    public List<Path> listLegacyChunks() {
+        try (Stream<Path> files = Files.list(savePath)) {
+            return files
+                .filter(path -> path.getFileName().toString().startsWith("chunk_"))
+                .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new RuntimeException("Could not list chunks", e);
+        }
+    }
+    
+    public Chunk readLegacyChunk(Path path) throws IOException {
+        if (path.getFileName().toString().endsWith(".json")) {
             String json = new String(Files.readAllBytes(path));
             ChunkData data = GSON.fromJson(json, ChunkData.class);
-            
-            world.loadChunk(data.x, data.z, data.blocks);
+            byte[] blocks = new byte[BlockStorage.VOLUME];
+            for (int x = 0; x < Chunk.SIZE; x++) {
+                for (int y = 0; y < Chunk.SIZE; y++) {
+                    for (int z = 0; z < Chunk.SIZE; z++) {
+                        blocks[BlockStorage.index(x, y, z)] = data.blocks[x][y][z];
+                    }
+                }
+            }
+            // Legacy chunks were a single section tall
+            ChunkSection[] sections = new ChunkSection[Chunk.SECTIONS];
+            sections[0] = new ChunkSection(BlockStorage.of(blocks));
+            return new Chunk(data.x, data.z, sections);
+        }
+        return ChunkCodec.read(path);
+    }
+    
+    /**
+     * Waits for every queued write to finish, then closes the region files.
+     */
+    public void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            regionStore.close();
         } catch (IOException e) {
-            throw new RuntimeException("Could not load chunk data", e);
+            throw new RuntimeException("Could not close region files", e);
         }
     }
     
+    public Path getSavePath() {
+        return savePath;
+    }
+    
     private static class PlayerData {
         Vector3f position;
         game.entity.Inventory inventory;
@@ -147,5 +312,6 @@ public class WorldSaveManager {
         String name;
         int version;
         long lastPlayed;
+        Long seed;
     }
 }
@@ -1,6 +1,7 @@
 #version 330 core
 
 in vec2 fragTexCoord;
+flat in float fragTile;
 in float lighting;
 in vec3 fragNormal;
 in vec3 fragPos;
@@ -10,11 +11,14 @@ out vec4 fragColor;
 uniform sampler2D textureSampler;
 uniform bool useTexture;
 uniform vec4 color;
+uniform bool showEdges;
 
 void main() {
     vec4 baseColor;
     if (useTexture) {
-        baseColor = texture(textureSampler, fragTexCoord);
+        // Texture coordinates are in blocks, repeat the tile across merged quads
+        vec2 tileOrigin = vec2(mod(fragTile, 16.0), floor(fragTile / 16.0));
+        baseColor = texture(textureSampler, (tileOrigin + fract(fragTexCoord)) / 16.0);
     } else {
         baseColor = color;
     }
@@ -28,5 +32,14 @@ void main() {
     vec4 edgeColor = vec4(0.0, 0.0, 0.0, 1.0);
     vec4 finalColor = mix(baseColor * lighting, edgeColor, edge * 0.3);
     
+    // Block outlines in the same pass: texture coordinates count blocks across the face, so block
+    // edges are where they cross whole numbers. Scaled by their screen-space rate for one-pixel lines.
+    if (showEdges) {
+        vec2 cell = fract(fragTexCoord);
+        vec2 pixels = min(cell, 1.0 - cell) / max(fwidth(fragTexCoord), vec2(1e-5));
+        float outline = 1.0 - clamp(min(pixels.x, pixels.y), 0.0, 1.0);
+        finalColor = mix(finalColor, edgeColor, outline);
+    }
+    
     fragColor = finalColor;
 }
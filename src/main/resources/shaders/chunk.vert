@@ -1,29 +1,42 @@
 #version 330 core
 
-layout (location = 0) in vec3 position;
-layout (location = 1) in vec2 texCoord;
+// Packed by MeshBuilder.vertex: x, y, z, face and light in the first int, u, v and tile in the second
+layout (location = 0) in uvec2 packedVertex;
+// Section origin relative to the camera when drawn by multi-draw, zero otherwise
+layout (location = 1) in vec3 drawOffset;
 
 out vec2 fragTexCoord;
+flat out float fragTile;
 out float lighting;
 out vec3 fragNormal;
 out vec3 fragPos;
 
 uniform mat4 projectionMatrix;
 uniform mat4 viewMatrix;
+// Origin of the section being drawn relative to the camera, zero when drawn by multi-draw
+uniform vec3 chunkOffset;
 
 void main() {
-    vec4 worldPos = vec4(position, 1.0);
-    vec4 viewPos = viewMatrix * worldPos;
-    gl_Position = projectionMatrix * viewPos;
-    fragTexCoord = texCoord;
+    uint first = packedVertex.x;
+    uint second = packedVertex.y;
+    
+    // Corners are stored in whole blocks, blocks are centered on their coordinates
+    vec3 localPos = vec3(first & 31u, (first >> 5) & 31u, (first >> 10) & 31u) - vec3(0.5);
+    float light = float((first >> 18) & 15u) / 15.0;
+    
+    vec3 position = chunkOffset + drawOffset + localPos;
+    gl_Position = projectionMatrix * viewMatrix * vec4(position, 1.0);
+    fragTexCoord = vec2(second & 31u, (second >> 5) & 31u);
+    fragTile = float((second >> 10) & 255u);
     fragPos = position;
     
-    // Calculate normal based on position within block
-    vec3 center = floor(position) + vec3(0.5);
-    fragNormal = normalize(position - center);
+    // Calculate normal based on position within block, sections start on whole blocks so the
+    // local position gives the same result as the world position
+    vec3 center = floor(localPos) + vec3(0.5);
+    fragNormal = normalize(localPos - center);
     
     // Simple lighting based on Y normal
     vec3 normal = vec3(0.0, 1.0, 0.0);
     vec3 lightDir = normalize(vec3(0.5, 1.0, 0.3));
-    lighting = max(dot(normal, lightDir), 0.3); // Ambient light of 0.3
+    lighting = max(dot(normal, lightDir), 0.3) * light; // Ambient light of 0.3
 }